@@ -0,0 +1,106 @@
+package com.github.crmepham;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * <p>Compares two sets of JMH results, as written with <em>-rf json</em>, and fails if any benchmark regressed.</p>
+ *
+ * <p>
+ *     Usage: <em>BaselineComparison &lt;baseline.json&gt; &lt;current.json&gt; [threshold percent]</em>.
+ *     Benchmarks are matched by name and parameters. A throughput benchmark regresses if its score drops,
+ *     an average time benchmark if its score rises, by more than the threshold, which defaults to 10%.
+ *     Allocation rates recorded by the <em>gc</em> profiler are compared in the same way as average times.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+public final class BaselineComparison {
+
+    private static final String ALLOCATION = "gc.alloc.rate.norm";
+
+    private BaselineComparison() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineComparison <baseline.json> <current.json> [threshold percent]");
+            System.exit(2);
+        }
+
+        final Map<String, Score> baseline = read(new File(args[0]));
+        final Map<String, Score> current = read(new File(args[1]));
+        final double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+
+        int regressions = 0;
+        System.out.println(String.format("%-90s %14s %14s %9s", "Benchmark", "Baseline", "Current", "Change"));
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            final Score before = baseline.get(entry.getKey());
+            final Score after = entry.getValue();
+            if (before == null || before.value == 0) {
+                System.out.println(String.format("%-90s %14s %14.3f %9s", entry.getKey(), "-", after.value, "new"));
+                continue;
+            }
+
+            final double change = (after.value - before.value) / before.value * 100;
+            final boolean regressed = after.higherIsBetter ? change < -threshold : change > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.println(String.format("%-90s %14.3f %14.3f %+8.1f%%%s", entry.getKey(), before.value, after.value, change, regressed ? " REGRESSION" : ""));
+        }
+
+        if (regressions > 0) {
+            System.out.println(String.format("%s benchmark(s) regressed by more than %s%%.", regressions, threshold));
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Score> read(final File file) throws IOException {
+        final List<Result> results = new Gson().fromJson(FileUtils.readFileToString(file, UTF_8), new TypeToken<List<Result>>(){}.getType());
+        final Map<String, Score> scores = new LinkedHashMap<>();
+        for (Result result : results) {
+            final String name = result.benchmark + (result.params == null ? "" : new TreeMap<>(result.params).toString());
+            scores.put(name + " [" + result.primaryMetric.scoreUnit + "]", new Score(result.primaryMetric.score, "thrpt".equals(result.mode)));
+            if (result.secondaryMetrics != null && result.secondaryMetrics.containsKey(ALLOCATION)) {
+                final Metric allocation = result.secondaryMetrics.get(ALLOCATION);
+                scores.put(name + " [" + allocation.scoreUnit + "]", new Score(allocation.score, false));
+            }
+        }
+        return scores;
+    }
+
+    private static final class Score {
+        final double value;
+        final boolean higherIsBetter;
+
+        Score(final double value, final boolean higherIsBetter) {
+            this.value = value;
+            this.higherIsBetter = higherIsBetter;
+        }
+    }
+
+    private static final class Result {
+        String benchmark;
+        String mode;
+        Map<String, String> params;
+        Metric primaryMetric;
+        Map<String, Metric> secondaryMetrics;
+    }
+
+    private static final class Metric {
+        double score;
+        String scoreUnit;
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.crmepham;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full run of {@link Main#bundleLocal(File)} over generated trees with an increasing number of files,
+ * spread across ten top-level directories. Every run is made by a new mojo, as every build is, so nothing it keeps
+ * in memory carries over between runs. Only {@link Main#bundleLocal(File)} is called, so the bundle manifest, the
+ * minification cache and the shared bundle cache, which {@link Main#execute()} sets up, are never used, and every
+ * run minifies every file and writes every bundle. Files shared between bundles are still minified only once per
+ * run, as they are in a real build.
+ *
+ * @author Christopher Mepham
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BundleLocalBenchmark {
+
+    /**
+     * The total number of files in the tree.
+     */
+    @Param({"10", "100", "1000"})
+    public int files;
+
+    /**
+     * The approximate size of each file in bytes.
+     */
+    @Param({"4096"})
+    public int bytes;
+
+    /**
+     * Whether the bundles are created in parallel.
+     */
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private File project;
+    private File resources;
+    private File source;
+    private File target;
+    private Main main;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        project = Files.createTempDirectory("resource-bundler-benchmark").toFile();
+        resources = new File(project, "src/main/resources");
+        source = new File(resources, "static");
+        Resources.tree(source, 10, files, bytes);
+        target = new File(project, "target");
+        if (!new File(target, "classes/static").mkdirs()) {
+            throw new IOException("Failed to create the target directory.");
+        }
+    }
+
+    /**
+     * Create a new mojo for every run, so that the build report and the state it keeps about the bundles it
+     * wrote do not grow from one run to the next.
+     */
+    @Setup(Level.Invocation)
+    public void newMain() {
+        main = new Main();
+        main.setLog(new Mojos.SilentLog());
+        Mojos.set(main, "projectBuildDirectory", target.getAbsolutePath());
+        Mojos.set(main, "projectResourcesDirectory", resources.getAbsolutePath());
+        Mojos.set(main, "fromPath", "static");
+        Mojos.set(main, "toPath", "classes/static");
+        Mojos.set(main, "copyBundleFilesOnly", false);
+        Mojos.set(main, "parallel", parallel);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtils.deleteQuietly(project);
+    }
+
+    @Benchmark
+    public boolean bundleLocal() throws MojoExecutionException {
+        return main.bundleLocal(source);
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.crmepham;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+/**
+ * Measures the throughput of the minifier created by a {@link MinifierEngine} for a file extension, in the same way
+ * as the plugin uses it, so that engines added to the classpath can be compared with the built-in ones.
+ *
+ * @author Christopher Mepham
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineBenchmark {
+
+    /**
+     * The file extension and engine, as an <em>extension=engine</em> pair. <em>Javascript</em> is generated as the
+     * input for the <em>js</em> and <em>mjs</em> extensions, and <em>CSS</em> for any other.
+     */
+    @Param({"js=yui", "css=builtin"})
+    public String engine;
+
+    /**
+     * The approximate size of the input in bytes.
+     */
+    @Param({"10240", "1048576"})
+    public int size;
+
+    private String input;
+    private StreamMinifier minifier;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Map.Entry<String, String> pair = MinifierEngines.pairs(engine).entrySet().iterator().next();
+        final String extension = pair.getKey();
+        input = extension.equals("js") || extension.equals("mjs") ? Resources.js(size, 1) : Resources.css(size, 1);
+
+        final Map<String, String> options = new HashMap<>();
+        options.put("jsLineBreak", "1");
+        final MinifierEngines.Context context = new MinifierEngines.Context(extension, options, new Mojos.SilentLog(), new DefaultBuildContext());
+        minifier = MinifierEngines.create(MinifierEngines.load(getClass().getClassLoader()), pair.getValue(), context);
+    }
+
+    @Benchmark
+    public String minify() throws IOException {
+        final StringWriter out = new StringWriter(input.length());
+        minifier.minify(new StringReader(input), out);
+        return out.toString();
+    }
+}
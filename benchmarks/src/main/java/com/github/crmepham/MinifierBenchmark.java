@@ -0,0 +1,74 @@
+package com.github.crmepham;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+/**
+ * Measures the throughput of each minifier on a single input of a given size, along with the chain of
+ * string replacements that minified every file before the single pass <em>CSS</em> minifier, as a baseline.
+ *
+ * @author Christopher Mepham
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MinifierBenchmark {
+
+    /**
+     * The approximate size of the input in bytes.
+     */
+    @Param({"10240", "1048576"})
+    public int size;
+
+    private String css;
+    private String js;
+    private CssMinifier cssMinifier;
+    private JavascriptMinifier javascriptMinifier;
+
+    @Setup
+    public void setUp() {
+        css = Resources.css(size, 1);
+        js = Resources.js(size, 1);
+        cssMinifier = new CssMinifier();
+        javascriptMinifier = new JavascriptMinifier(new Mojos.SilentLog(), new DefaultBuildContext());
+    }
+
+    @Benchmark
+    public String css() throws IOException {
+        return cssMinifier.minify(css);
+    }
+
+    @Benchmark
+    public String javascript() throws IOException {
+        return javascriptMinifier.minify(js);
+    }
+
+    @Benchmark
+    public String baseline() {
+        String input = css;
+
+        // Remove line terminator characters.
+        for (String whitespace : new String[] {"\n", "\t", "\r", "\f"}) {
+            input = input.replace(whitespace, "");
+        }
+
+        // Remove all block comments.
+        return input.replaceAll("(\\/\\*.+?\\*\\/)", "");
+    }
+}
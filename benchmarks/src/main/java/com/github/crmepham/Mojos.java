@@ -0,0 +1,60 @@
+package com.github.crmepham;
+
+import java.lang.reflect.Field;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Configures mojos outside of Maven, the same way Maven injects their parameters.
+ *
+ * @author Christopher Mepham
+ */
+final class Mojos {
+
+    private Mojos() {
+    }
+
+    /**
+     * Set a parameter of the mojo.
+     * @param mojo The mojo.
+     * @param name The parameter name.
+     * @param value The parameter value.
+     */
+    static void set(final Object mojo, final String name, final Object value) {
+        for (Class<?> type = mojo.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                final Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(mojo, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                // Try the superclass.
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        throw new IllegalArgumentException("No such parameter: " + name);
+    }
+
+    /**
+     * A log that discards everything, so that logging does not skew the measurements.
+     */
+    static final class SilentLog implements Log {
+        public boolean isDebugEnabled() { return false; }
+        public void debug(CharSequence content) { }
+        public void debug(CharSequence content, Throwable error) { }
+        public void debug(Throwable error) { }
+        public boolean isInfoEnabled() { return false; }
+        public void info(CharSequence content) { }
+        public void info(CharSequence content, Throwable error) { }
+        public void info(Throwable error) { }
+        public boolean isWarnEnabled() { return false; }
+        public void warn(CharSequence content) { }
+        public void warn(CharSequence content, Throwable error) { }
+        public void warn(Throwable error) { }
+        public boolean isErrorEnabled() { return false; }
+        public void error(CharSequence content) { }
+        public void error(CharSequence content, Throwable error) { }
+        public void error(Throwable error) { }
+    }
+}
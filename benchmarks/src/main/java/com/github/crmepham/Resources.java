@@ -0,0 +1,87 @@
+package com.github.crmepham;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Generates deterministic <em>Javascript</em> and <em>CSS</em> sources, and trees of them, for the benchmarks.
+ *
+ * @author Christopher Mepham
+ */
+final class Resources {
+
+    private Resources() {
+    }
+
+    /**
+     * Generate a stylesheet of roughly the given size, with comments, selectors, strings and <em>url()</em> values.
+     * @param bytes The approximate size in bytes.
+     * @param seed The random seed.
+     * @return The stylesheet.
+     */
+    static String css(final int bytes, final long seed) {
+        final Random random = new Random(seed);
+        final StringBuilder builder = new StringBuilder(bytes + 256);
+        for (int i = 0; builder.length() < bytes; i++) {
+            if (i % 10 == 0) {
+                builder.append("/* Section ").append(i).append(" */\n");
+            }
+            builder.append(".block-").append(i).append(" .element-").append(random.nextInt(100)).append(" > a:hover ,\n")
+                    .append(".block-").append(i).append("--modifier {\n")
+                    .append("    color : #").append(Integer.toHexString(random.nextInt(0xffffff))).append(";\n")
+                    .append("    margin : ").append(random.nextInt(20)).append("px ").append(random.nextInt(20)).append("px;\n")
+                    .append("    font-family : \"Open Sans\", sans-serif;\n")
+                    .append("    background : url( ../img/icon-").append(random.nextInt(50)).append(".png ) no-repeat;\n")
+                    .append("}\n\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Generate a script of roughly the given size, with comments, functions, loops and strings.
+     * @param bytes The approximate size in bytes.
+     * @param seed The random seed.
+     * @return The script.
+     */
+    static String js(final int bytes, final long seed) {
+        final Random random = new Random(seed);
+        final StringBuilder builder = new StringBuilder(bytes + 256);
+        for (int i = 0; builder.length() < bytes; i++) {
+            builder.append("// Function ").append(i).append('\n')
+                    .append("function handler").append(i).append("(element, options) {\n")
+                    .append("    var total = ").append(random.nextInt(1000)).append(";\n")
+                    .append("    for (var index = 0; index < options.length; index++) {\n")
+                    .append("        total += options[index] * ").append(random.nextInt(10)).append(";\n")
+                    .append("    }\n")
+                    .append("    element.setAttribute(\"data-total-").append(i).append("\", String(total));\n")
+                    .append("    return total;\n")
+                    .append("}\n\n");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Generate a tree of sources to bundle, spread evenly across the given number of top-level directories.
+     * Each top-level directory gets both <em>js</em> and <em>css</em> files, nested one level deep.
+     * @param root The directory to generate the tree in.
+     * @param directories The number of top-level directories, and so bundles of each type.
+     * @param files The total number of files.
+     * @param bytes The approximate size in bytes of each file.
+     * @throws IOException If the tree could not be written.
+     */
+    static void tree(final File root, final int directories, final int files, final int bytes) throws IOException {
+        for (int i = 0; i < files; i++) {
+            final File directory = new File(root, "bundle" + (i % directories) + File.separator + "part" + (i % 3));
+            if (i % 2 == 0) {
+                FileUtils.writeStringToFile(new File(directory, "file" + i + ".js"), js(bytes, i), UTF_8);
+            } else {
+                FileUtils.writeStringToFile(new File(directory, "file" + i + ".css"), css(bytes, i), UTF_8);
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.github.crmepham;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * <p>Maps the logical name of every bundle, such as <em>app-bundle.js</em>, to the name of the file it
+ * was written to in the target directory, such as <em>app-bundle.3f9a1c2b.js</em>, or to the names of the
+ * chunks it was split into, such as <em>app-bundle.0.js</em> and <em>app-bundle.1.js</em>.</p>
+ *
+ * <p>
+ *     Pages and server side templates look bundles up in the manifest rather than hard coding their names,
+ *     so the bundles can be cached for as long as their contents do not change. The files named by the
+ *     manifest of the previous build that are no longer named by the current one are deleted once the
+ *     manifest is written.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class AssetManifest {
+
+    /**
+     * The number of hex characters of the content hash put in the file name.
+     */
+    static final int HASH_LENGTH = 8;
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private final File file;
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * @param file The manifest file in the target directory.
+     */
+    AssetManifest(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Get the name of a bundle file with the given content hash added before its extension.
+     * @param name The bundle file name, such as <em>app-bundle.js</em>.
+     * @param hash The hex content hash of the bundle file.
+     * @return The hashed file name, such as <em>app-bundle.3f9a1c2b.js</em>.
+     */
+    static String hashedName(final String name, final String hash) {
+        final int dot = name.lastIndexOf('.');
+        final String prefix = hash.substring(0, Math.min(HASH_LENGTH, hash.length()));
+        return dot < 0 ? name + "." + prefix : name.substring(0, dot) + "." + prefix + name.substring(dot);
+    }
+
+    /**
+     * Record the file a bundle was written to.
+     * @param name The logical bundle file name.
+     * @param file The name of the file in the target directory.
+     * @return The names of the files previously recorded for the bundle during this build.
+     */
+    Set<String> put(final String name, final String file) {
+        final Entry entry = new Entry();
+        entry.file = file;
+        return put(name, entry);
+    }
+
+    /**
+     * Record the chunks a bundle was split into.
+     * @param name The logical bundle file name.
+     * @param chunks The names of the chunk files in the target directory, in the order they must be loaded.
+     * @return The names of the files previously recorded for the bundle during this build.
+     */
+    Set<String> putChunks(final String name, final List<String> chunks) {
+        final Entry entry = new Entry();
+        entry.chunks = chunks;
+        return put(name, entry);
+    }
+
+    /**
+     * Forget a bundle that no longer exists, along with every dependency on it.
+     * @param name The logical bundle file name.
+     * @return The names of the files previously recorded for the bundle during this build.
+     */
+    Set<String> remove(final String name) {
+        final Entry removed = entries.remove(name);
+        for (Entry entry : entries.values()) {
+            if (entry.dependencies != null && entry.dependencies.remove(name) && entry.dependencies.isEmpty()) {
+                entry.dependencies = null;
+            }
+        }
+        return removed == null ? new HashSet<>() : names(Collections.singleton(removed));
+    }
+
+    /**
+     * Record that a bundle depends on another bundle, which must be loaded first.
+     * @param name The logical bundle file name.
+     * @param dependency The logical file name of the bundle it depends on.
+     */
+    void addDependency(final String name, final String dependency) {
+        final Entry entry = entries.get(name);
+        if (entry == null || !entries.containsKey(dependency)) {
+            return;
+        }
+        if (entry.dependencies == null) {
+            entry.dependencies = new ArrayList<>();
+        }
+        if (!entry.dependencies.contains(dependency)) {
+            entry.dependencies.add(dependency);
+        }
+    }
+
+    private Set<String> put(final String name, final Entry entry) {
+        final Entry replaced = entries.put(name, entry);
+        return replaced == null ? new HashSet<>() : names(Collections.singleton(replaced));
+    }
+
+    /**
+     * Write the manifest, replacing the manifest of the previous build, then delete the files that only
+     * the previous manifest named, along with any precompressed sidecars of them.
+     * @param log The log.
+     * @throws IOException If the manifest could not be written.
+     */
+    void write(final Log log) throws IOException {
+        final Map<String, Entry> previous = read();
+        FileUtils.writeStringToFile(file, GSON.toJson(entries), UTF_8);
+
+        deleteStale(file.getParentFile(), names(previous.values()), names(entries.values()), log);
+    }
+
+    /**
+     * Delete the manifest of an earlier build that hashed or split its bundles, along with the files it names,
+     * and any precompressed sidecars of them, once bundles are written under their own names again.
+     * @param file The manifest file in the target directory.
+     * @param current The names of the files written to the target directory by this build, which are kept.
+     * @param log The log.
+     */
+    static void deleteEarlier(final File file, final Set<String> current, final Log log) {
+        if (!file.isFile()) {
+            return;
+        }
+        final AssetManifest earlier = new AssetManifest(file);
+        deleteStale(file.getParentFile(), names(earlier.read().values()), current, log);
+        log.info("Deleting stale asset manifest: " + file.getAbsolutePath());
+        if (!file.delete()) {
+            log.warn("Failed to delete stale asset manifest: " + file.getAbsolutePath());
+        }
+    }
+
+    private static void deleteStale(final File directory, final Set<String> previous, final Set<String> current, final Log log) {
+        for (String name : previous) {
+            if (current.contains(name) || name.contains("/") || name.contains("\\")) {
+                continue;
+            }
+            for (File stale : new File[] { new File(directory, name), new File(directory, name + ".gz") }) {
+                if (stale.isFile()) {
+                    log.info("Deleting stale bundle file: " + stale.getAbsolutePath());
+                    if (!stale.delete()) {
+                        log.warn("Failed to delete stale bundle file: " + stale.getAbsolutePath());
+                    }
+                }
+            }
+        }
+    }
+
+    private Map<String, Entry> read() {
+        if (file.isFile()) {
+            try {
+                final Map<String, Entry> previous = GSON.fromJson(FileUtils.readFileToString(file, UTF_8), new TypeToken<Map<String, Entry>>(){}.getType());
+                if (previous != null) {
+                    return previous;
+                }
+            } catch (IOException | JsonParseException e) {
+                // A missing or unreadable manifest leaves nothing to clean up.
+            }
+        }
+        return new TreeMap<>();
+    }
+
+    private static Set<String> names(final Collection<Entry> entries) {
+        final Set<String> names = new HashSet<>();
+        for (Entry entry : entries) {
+            if (entry != null && entry.file != null) {
+                names.add(entry.file);
+            }
+            if (entry != null && entry.chunks != null) {
+                names.addAll(entry.chunks);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * The file a single bundle was written to, or the chunks it was split into, and the logical names
+     * of the bundles it depends on.
+     */
+    static final class Entry {
+        String file;
+        List<String> chunks;
+        List<String> dependencies;
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.crmepham;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Contains static methods for replacing files atomically, so that other threads and processes
+ * never observe a partially written file.
+ *
+ * @author Christopher Mepham
+ */
+final class AtomicFiles {
+
+    private AtomicFiles() {
+    }
+
+    /**
+     * Atomically move the source file over the target file, falling back to a plain replace on
+     * file systems that do not support atomic moves.
+     * @param source The source file.
+     * @param target The target file.
+     * @throws IOException If the file could not be moved.
+     */
+    static void move(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
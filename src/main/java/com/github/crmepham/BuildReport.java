@@ -0,0 +1,296 @@
+package com.github.crmepham;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.gson.GsonBuilder;
+
+/**
+ * <p>Collects timings and sizes for every bundle, input file and external dependency.</p>
+ *
+ * <p>
+ *     For each input file the report records the time spent reading, minifying and writing it, and its
+ *     size before and after minification. For each bundle it records the totals, the bytes saved by
+ *     optimizing it, the time spent copying it to the target directory, and whether it was skipped because
+ *     it was up to date or restored from the shared bundle cache, along with the hits and misses of that
+ *     cache. For each external dependency it records how long it took to fetch, and for each size budget
+ *     the size it was checked against. The report is written as JSON and summarised in the log. Bundles
+ *     may be reported from several threads at once.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class BuildReport {
+
+    private final List<Bundle> bundles = Collections.synchronizedList(new ArrayList<>());
+    private final List<Fetch> fetches = Collections.synchronizedList(new ArrayList<>());
+    private final List<Budget> budgets = Collections.synchronizedList(new ArrayList<>());
+    private SharedCache sharedCache;
+
+    /**
+     * Add the metrics of a bundle that was created, or skipped because it was up to date.
+     * @param bundle The bundle metrics.
+     */
+    void add(final Bundle bundle) {
+        bundles.add(bundle);
+    }
+
+    /**
+     * Record the time taken to fetch an external dependency.
+     * @param uri The URI.
+     * @param nanos The time taken, in nanoseconds.
+     * @param bytes The size of the fetched contents.
+     */
+    void fetched(final String uri, final long nanos, final long bytes) {
+        final Fetch fetch = new Fetch();
+        fetch.uri = uri;
+        fetch.millis = millis(nanos);
+        fetch.bytes = bytes;
+        fetches.add(fetch);
+    }
+
+    /**
+     * Record the number of bundles found, and not found, in the shared bundle cache.
+     * @param hits The number of bundles restored from the cache.
+     * @param misses The number of bundles created because the cache did not contain them.
+     */
+    void sharedCache(final int hits, final int misses) {
+        final SharedCache cache = new SharedCache();
+        cache.hits = hits;
+        cache.misses = misses;
+        sharedCache = cache;
+    }
+
+    /**
+     * Record the size a budget was checked against.
+     * @param bundle The bundle file name, or <code>null</code> for every bundle together.
+     * @param kind Either <em>size</em> or <em>gzipSize</em>.
+     * @param bytes The size, in bytes.
+     * @param budget The budget, in bytes.
+     */
+    void budget(final String bundle, final String kind, final long bytes, final long budget) {
+        final Budget record = new Budget();
+        record.bundle = bundle;
+        record.kind = kind;
+        record.bytes = bytes;
+        record.budget = budget;
+        record.exceeded = bytes > budget;
+        budgets.add(record);
+    }
+
+    /**
+     * Find the metrics of a bundle reported earlier.
+     * @param name The bundle file name.
+     * @param type Either <em>local</em> or <em>external</em>.
+     * @return The bundle metrics, or <code>null</code> if the bundle has not been reported.
+     */
+    Bundle find(final String name, final String type) {
+        synchronized (bundles) {
+            for (Bundle bundle : bundles) {
+                if (bundle.name.equals(name) && bundle.type.equals(type)) {
+                    return bundle;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Write the report as JSON.
+     * @param file The report file.
+     * @throws IOException If the report could not be written.
+     */
+    void write(final File file) throws IOException {
+        final Report report = new Report();
+        report.bundles = sorted();
+        synchronized (fetches) {
+            report.fetches = new ArrayList<>(fetches);
+        }
+        report.sharedCache = sharedCache;
+        synchronized (budgets) {
+            report.budgets = new ArrayList<>(budgets);
+        }
+        FileUtils.writeStringToFile(file, new GsonBuilder().setPrettyPrinting().create().toJson(report), UTF_8);
+    }
+
+    /**
+     * Log a summary table of every bundle and external dependency.
+     * @param log The log.
+     */
+    void summarize(final Log log) {
+        final List<Bundle> sorted = sorted();
+        if (!sorted.isEmpty()) {
+            log.info(format("%-40s %-8s %6s %12s %12s %7s %11s %11s %11s %11s", "Bundle", "Type", "Files", "Input (B)", "Output (B)", "Ratio", "Read (ms)", "Minify (ms)", "Write (ms)", "Copy (ms)"));
+            for (Bundle b : sorted) {
+                log.info(format("%-40s %-8s %6s %12s %12s %7.3f %11.1f %11.1f %11.1f %11.1f%s", b.name, b.type, b.files.size(), b.inputBytes, b.outputBytes,
+                        b.ratio, b.readMillis, b.minifyMillis, b.writeMillis, b.copyMillis,
+                        b.skipped ? " (up to date)" : b.restored ? " (restored)" : b.optimizedBytes > 0 ? format(" (optimized, %s B saved)", b.optimizedBytes) : ""));
+            }
+        }
+
+        synchronized (fetches) {
+            if (!fetches.isEmpty()) {
+                log.info(format("%-80s %12s %10s", "External dependency", "Bytes", "Fetch (ms)"));
+                for (Fetch f : fetches) {
+                    log.info(format("%-80s %12s %10.1f", f.uri, f.bytes, f.millis));
+                }
+            }
+        }
+    }
+
+    private List<Bundle> sorted() {
+        final List<Bundle> sorted;
+        synchronized (bundles) {
+            sorted = new ArrayList<>(bundles);
+        }
+        sorted.sort(Comparator.comparing((Bundle b) -> b.type).thenComparing(b -> b.name));
+        return sorted;
+    }
+
+    static double millis(final long nanos) {
+        return nanos / 1000000d;
+    }
+
+    static double ratio(final long output, final long input) {
+        return input == 0 ? 0 : (double) output / input;
+    }
+
+    /**
+     * The metrics of a single bundle.
+     */
+    static final class Bundle {
+        String name;
+        String type;
+        boolean skipped;
+        boolean restored;
+        long inputBytes;
+        long outputBytes;
+        double ratio;
+        double readMillis;
+        double minifyMillis;
+        double writeMillis;
+        double copyMillis;
+        long optimizedBytes;
+        double optimizeMillis;
+        final List<Input> files = new ArrayList<>();
+
+        Bundle(final String name, final String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        /**
+         * Add the metrics of an input file to the bundle totals.
+         * @param input The input file metrics.
+         */
+        void add(final Input input) {
+            files.add(input);
+            inputBytes += input.inputBytes;
+            outputBytes += input.outputBytes;
+            ratio = BuildReport.ratio(outputBytes, inputBytes);
+            readMillis += input.readMillis;
+            minifyMillis += input.minifyMillis;
+            writeMillis += input.writeMillis;
+        }
+
+        /**
+         * Record the bytes saved by optimizing the bundle after it was written.
+         * @param saved The number of bytes removed.
+         * @param nanos The time taken, in nanoseconds.
+         */
+        void optimized(final long saved, final long nanos) {
+            optimizedBytes += saved;
+            outputBytes -= saved;
+            ratio = BuildReport.ratio(outputBytes, inputBytes);
+            optimizeMillis += millis(nanos);
+        }
+
+        /**
+         * Record the time taken to copy the bundle to the target directory.
+         * @param nanos The time taken, in nanoseconds.
+         */
+        void copied(final long nanos) {
+            copyMillis += millis(nanos);
+        }
+    }
+
+    /**
+     * The metrics of a single input file, or external dependency, of a bundle.
+     */
+    static final class Input {
+        String path;
+        boolean cached;
+        long inputBytes;
+        long outputBytes;
+        double ratio;
+        double readMillis;
+        double minifyMillis;
+        double writeMillis;
+
+        Input(final String path) {
+            this.path = path;
+        }
+
+        /**
+         * Record the measurements of this input.
+         * @param inputBytes The size of the input.
+         * @param outputBytes The size of the minified output.
+         * @param readNanos The time spent reading the input.
+         * @param writeNanos The time spent writing the output.
+         * @param totalNanos The total time taken, the remainder of which was spent minifying.
+         */
+        void measured(final long inputBytes, final long outputBytes, final long readNanos, final long writeNanos, final long totalNanos) {
+            this.inputBytes = inputBytes;
+            this.outputBytes = outputBytes;
+            this.ratio = BuildReport.ratio(outputBytes, inputBytes);
+            this.readMillis = millis(readNanos);
+            this.writeMillis = millis(writeNanos);
+            this.minifyMillis = millis(Math.max(0, totalNanos - readNanos - writeNanos));
+        }
+    }
+
+    /**
+     * The metrics of fetching a single external dependency.
+     */
+    static final class Fetch {
+        String uri;
+        long bytes;
+        double millis;
+    }
+
+    /**
+     * The hits and misses of the shared bundle cache.
+     */
+    static final class SharedCache {
+        int hits;
+        int misses;
+    }
+
+    /**
+     * The size of a bundle, or of every bundle together, checked against its budget.
+     */
+    static final class Budget {
+        String bundle;
+        String kind;
+        long bytes;
+        long budget;
+        boolean exceeded;
+    }
+
+    private static final class Report {
+        List<Bundle> bundles;
+        List<Fetch> fetches;
+        SharedCache sharedCache;
+        List<Budget> budgets;
+    }
+}
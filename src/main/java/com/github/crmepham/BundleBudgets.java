@@ -0,0 +1,196 @@
+package com.github.crmepham;
+
+import static java.lang.String.format;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+
+/**
+ * <p>Checks the size of every bundle, before and after gzip compression, against its budget.</p>
+ *
+ * <p>
+ *     Every bundle has the default budget unless a budget is given for it by file name, and the total size of
+ *     every bundle has a budget of its own. A budget of 0 means no limit. The message for every budget that is
+ *     exceeded lists the files that contribute the most to the bundles, from the number of bytes each file takes
+ *     up in them, so that the cause can be found without unpacking the bundle. The gzip size is only measured
+ *     when there is a gzip budget, at the same compression level the sidecars are written with.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class BundleBudgets {
+
+    private static final int LARGEST = 5;
+
+    private final long[] defaults;
+    private final long[] total;
+    private final Map<String, long[]> bundles;
+    private final int level;
+
+    /**
+     * @param maxSize The default budget of every bundle, in bytes.
+     * @param maxGzipSize The default budget of every bundle after gzip compression, in bytes.
+     * @param maxTotalSize The budget of every bundle together, in bytes.
+     * @param maxTotalGzipSize The budget of every bundle together after gzip compression, in bytes.
+     * @param bundles The budgets of individual bundles, by bundle file name, as parsed by {@link #parse(String)}.
+     * @param level The gzip compression level.
+     */
+    BundleBudgets(final long maxSize, final long maxGzipSize, final long maxTotalSize, final long maxTotalGzipSize,
+                  final Map<String, long[]> bundles, final int level) {
+        this.defaults = new long[] {maxSize, maxGzipSize};
+        this.total = new long[] {maxTotalSize, maxTotalGzipSize};
+        this.bundles = bundles;
+        this.level = level;
+    }
+
+    /**
+     * Parse a comma-separated list of bundle budgets, each of the form <em>name=size</em> or
+     * <em>name=size/gzipSize</em>, such as <em>app-bundle.js=250000/60000</em>.
+     * @param list The list, or null.
+     * @return The raw and gzip budgets, by bundle file name.
+     * @throws IllegalArgumentException If a budget is invalid.
+     */
+    static Map<String, long[]> parse(final String list) {
+        final Map<String, long[]> budgets = new LinkedHashMap<>();
+        for (Map.Entry<String, String> pair : MinifierEngines.pairs(list).entrySet()) {
+            final String[] sizes = pair.getValue().split("/", -1);
+            if (sizes.length > 2) {
+                throw new IllegalArgumentException("Expected size or size/gzipSize but was: " + pair.getValue());
+            }
+            try {
+                budgets.put(pair.getKey(), new long[] {
+                        sizes[0].trim().isEmpty() ? 0 : Long.parseLong(sizes[0].trim()),
+                        sizes.length == 1 || sizes[1].trim().isEmpty() ? 0 : Long.parseLong(sizes[1].trim())});
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(format("Invalid budget for bundle '%s': %s", pair.getKey(), pair.getValue()));
+            }
+        }
+        return budgets;
+    }
+
+    /**
+     * @return True if there are no budgets to check.
+     */
+    boolean isEmpty() {
+        if (defaults[0] > 0 || defaults[1] > 0 || total[0] > 0 || total[1] > 0) {
+            return false;
+        }
+        for (long[] budget : bundles.values()) {
+            if (budget[0] > 0 || budget[1] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check every bundle against its budget.
+     * @param contributors The files every bundle was created from, by bundle file, in bundle order.
+     * @param segments The number of bytes each file takes up in every bundle file, in bundle order.
+     * @param report The report to record the budgets that were checked in.
+     * @return A message for every budget that was exceeded.
+     * @throws IOException If a bundle could not be read.
+     */
+    List<String> check(final Map<File, List<String>> contributors, final Map<File, long[]> segments, final BuildReport report) throws IOException {
+        final List<String> exceeded = new ArrayList<>();
+        final List<Contribution> all = new ArrayList<>();
+        long size = 0;
+        long gzipSize = 0;
+        for (Map.Entry<File, List<String>> entry : contributors.entrySet()) {
+            final File bundle = entry.getKey();
+            if (!bundle.isFile()) {
+                continue;
+            }
+            final long[] budget = bundles.getOrDefault(bundle.getName(), defaults);
+            final List<Contribution> largest = contributions(bundle, entry.getValue(), segments.get(bundle));
+            all.addAll(largest);
+
+            final long length = bundle.length();
+            size += length;
+            check(exceeded, report, format("Bundle '%s'", bundle.getName()), bundle.getName(), "size", length, budget[0], largest);
+            if (budget[1] > 0 || total[1] > 0) {
+                final long gzipped = gzipSize(bundle);
+                gzipSize += gzipped;
+                check(exceeded, report, format("Bundle '%s'", bundle.getName()), bundle.getName(), "gzipSize", gzipped, budget[1], largest);
+            }
+        }
+
+        check(exceeded, report, "All bundles together", null, "size", size, total[0], all);
+        check(exceeded, report, "All bundles together", null, "gzipSize", gzipSize, total[1], all);
+        return exceeded;
+    }
+
+    private static void check(final List<String> exceeded, final BuildReport report, final String subject, final String bundle,
+                              final String kind, final long size, final long budget, final List<Contribution> contributions) {
+        if (budget <= 0) {
+            return;
+        }
+        report.budget(bundle, kind, size, budget);
+        if (size <= budget) {
+            return;
+        }
+
+        final StringBuilder message = new StringBuilder(format("%s %s %s byte(s)%s, over the budget of %s byte(s) by %s byte(s).",
+                subject, bundle == null ? "take up" : "is", size, kind.equals("gzipSize") ? " after gzip compression" : "", budget, size - budget));
+        if (!contributions.isEmpty()) {
+            final List<Contribution> sorted = new ArrayList<>(contributions);
+            sorted.sort(Comparator.comparingLong((Contribution c) -> c.bytes).reversed());
+            message.append(" Largest files, by minified size:");
+            for (Contribution contribution : sorted.subList(0, Math.min(LARGEST, sorted.size()))) {
+                message.append(format("%n  %12s B  %s%s", contribution.bytes, contribution.path,
+                        bundle == null ? format(" (%s)", contribution.bundle) : ""));
+            }
+        }
+        exceeded.add(message.toString());
+    }
+
+    /**
+     * Get the number of bytes each file takes up in a bundle, as long as the files and sizes recorded for
+     * the bundle still match.
+     */
+    private static List<Contribution> contributions(final File bundle, final List<String> paths, final long[] sizes) {
+        if (paths == null || sizes == null || paths.size() != sizes.length) {
+            return Collections.emptyList();
+        }
+        final List<Contribution> contributions = new ArrayList<>(sizes.length);
+        for (int i = 0; i < sizes.length; i++) {
+            contributions.add(new Contribution(bundle.getName(), paths.get(i), sizes[i]));
+        }
+        return contributions;
+    }
+
+    private long gzipSize(final File bundle) throws IOException {
+        final CountingOutputStream counter = new CountingOutputStream(NullOutputStream.NULL_OUTPUT_STREAM);
+        try (OutputStream out = new Precompressor.LevelGZIPOutputStream(counter, level)) {
+            Files.copy(bundle.toPath(), out);
+        }
+        return counter.getByteCount();
+    }
+
+    /**
+     * The number of bytes a single file takes up in a bundle.
+     */
+    private static final class Contribution {
+
+        private final String bundle;
+        private final String path;
+        private final long bytes;
+
+        Contribution(final String bundle, final String path, final long bytes) {
+            this.bundle = bundle;
+            this.path = path;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.github.crmepham;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * <p>A disk-backed cache of finished bundles, which can be shared by every module of a build and by
+ * every machine that builds it.</p>
+ *
+ * <p>
+ *     Entries are keyed by the content hashes of the input files, in bundle order, together with the
+ *     plugin version and every setting that affects the bundle contents. The paths of the input files are
+ *     usually not part of the key, so modules that bundle the same files from different directories share
+ *     an entry. When <em>CSS</em> assets or imports are inlined, though, the contents of a bundle depend
+ *     on where its files and the images, fonts and files they reference are, since the URLs that are not
+ *     inlined are rewritten relative to the source directory. The path of every input relative to the
+ *     source directory is then part of the key as well, so that different layouts of the same files never
+ *     share an entry. Each entry is a directory holding the bundle and the size of every input in it. It
+ *     is written under a temporary name and then renamed into place, so no lock is needed: a build either
+ *     sees a complete entry or none at all, and when two builds add the same entry at once the first
+ *     rename wins. Entries are never evicted, so the directory should be cleared from time to time, as is
+ *     usual for build caches.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class BundleCache {
+
+    /**
+     * Changing the cache format must change this version, so that old entries are never read.
+     */
+    private static final String VERSION = "1";
+
+    private static final String BUNDLE = "bundle";
+
+    private static final String SEGMENTS = "segments.json";
+
+    private static final Gson GSON = new Gson();
+
+    private final File directory;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    BundleCache(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Get the cache key for a bundle.
+     * @param settings The plugin version and every setting that affects the bundle contents.
+     * @param inputs The content hash of every input file, in bundle order.
+     * @param paths The path of every input file relative to the source directory, in the same order, when
+     *              the bundle contents depend on where its files are, otherwise null.
+     * @return The cache key.
+     */
+    static String key(final String settings, final List<String> inputs, final List<String> paths) {
+        final MessageDigest digest = ContentHash.newDigest();
+        digest.update((VERSION + '\0' + settings + '\0').getBytes(UTF_8));
+        for (String input : inputs) {
+            digest.update((input + '\0').getBytes(UTF_8));
+        }
+        if (paths != null) {
+            digest.update((byte) 1);
+            for (String path : paths) {
+                digest.update((path + '\0').getBytes(UTF_8));
+            }
+        }
+        return ContentHash.toHex(digest.digest());
+    }
+
+    /**
+     * Get the cached bundle for the given key, counting a hit or a miss.
+     * @param key The cache key.
+     * @return The cached bundle, or null if the cache does not contain the key.
+     */
+    Entry get(final String key) {
+        final File entry = new File(directory, key);
+        final File bundle = new File(entry, BUNDLE);
+        try {
+            final long[] segments = GSON.fromJson(FileUtils.readFileToString(new File(entry, SEGMENTS), UTF_8), long[].class);
+            if (segments != null && bundle.isFile() && ChunkSplitter.total(segments) == bundle.length()) {
+                hits.incrementAndGet();
+                return new Entry(bundle, segments);
+            }
+        } catch (IOException | JsonParseException e) {
+            // A missing or unreadable entry is a miss.
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Add a bundle to the cache. If another build adds the same entry first, this one is discarded.
+     * @param key The cache key.
+     * @param bundle The bundle file.
+     * @param segments The number of bytes each input takes up in the bundle.
+     * @throws IOException If the entry could not be written.
+     */
+    void put(final String key, final File bundle, final long[] segments) throws IOException {
+        final Path entry = directory.toPath().resolve(key);
+        if (Files.isDirectory(entry)) {
+            return;
+        }
+        Files.createDirectories(directory.toPath());
+        final Path temp = directory.toPath().resolve(key + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.createDirectory(temp);
+            Files.copy(bundle.toPath(), temp.resolve(BUNDLE));
+            Files.write(temp.resolve(SEGMENTS), GSON.toJson(segments).getBytes(UTF_8));
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry);
+            }
+        } catch (IOException e) {
+            // Another build may have added the same entry first.
+            if (!Files.isDirectory(entry)) {
+                throw e;
+            }
+        } finally {
+            FileUtils.deleteQuietly(temp.toFile());
+        }
+    }
+
+    /**
+     * Get the number of bundles found in the cache.
+     * @return The number of hits.
+     */
+    int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of bundles not found in the cache.
+     * @return The number of misses.
+     */
+    int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * A cached bundle.
+     */
+    static final class Entry {
+
+        final File bundle;
+        final long[] segments;
+
+        Entry(final File bundle, final long[] segments) {
+            this.bundle = bundle;
+            this.segments = segments;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.github.crmepham;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * <p>Records the inputs and output of every bundle so that unchanged bundles can be skipped.</p>
+ *
+ * <p>
+ *     For each bundle the manifest holds the path, size, last modified time and content hash of
+ *     every input file, a hash of the plugin version and settings it was created with, along with the
+ *     content hash of the bundle file that was written. A bundle is up to date if it was created with the
+ *     same settings, its inputs are the same files, in the same order, with the same contents,
+ *     and the bundle file on disk still has the recorded contents. Input files whose size and last
+ *     modified time have not changed are not hashed again.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class BundleManifest {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final File file;
+    private final Map<String, Entry> previous;
+    private final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    private BundleManifest(final File file, final Map<String, Entry> previous) {
+        this.file = file;
+        this.previous = previous;
+    }
+
+    /**
+     * Load the manifest from the given file. A missing or unreadable manifest is treated as empty.
+     * @param file The manifest file.
+     * @return The manifest.
+     */
+    static BundleManifest load(final File file) {
+        Map<String, Entry> entries = null;
+        if (file.isFile()) {
+            try {
+                entries = GSON.fromJson(FileUtils.readFileToString(file, UTF_8), new TypeToken<Map<String, Entry>>(){}.getType());
+            } catch (IOException | JsonParseException e) {
+                entries = null;
+            }
+        }
+        return new BundleManifest(file, entries == null ? new TreeMap<>() : entries);
+    }
+
+    /**
+     * Get the fingerprints of the given input files. Hashes recorded by the previous build are reused
+     * for files whose size and last modified time have not changed, or, during an incremental build,
+     * for files the build context reports no changes for.
+     * @param name The bundle file name.
+     * @param files The input files, in bundle order.
+     * @param context The build context.
+     * @return The input fingerprints, in bundle order.
+     * @throws IOException If an input file could not be read.
+     */
+    List<Input> fingerprint(final String name, final List<File> files, final BuildContext context) throws IOException {
+        final Entry entry = previous.get(name);
+        final boolean incremental = context != null && context.isIncremental();
+        final List<Input> inputs = new ArrayList<>(files.size());
+        for (int i = 0, j = files.size(); i < j; i++) {
+            final File f = files.get(i);
+            final Input input = new Input(f.getAbsolutePath(), f.length(), f.lastModified());
+            final Input recorded = entry != null && entry.inputs != null && i < entry.inputs.size() ? entry.inputs.get(i) : null;
+            if (recorded != null && recorded.path.equals(input.path)
+                    && ((incremental && !context.hasDelta(f)) || (recorded.size == input.size && recorded.lastModified == input.lastModified))) {
+                input.hash = recorded.hash;
+            } else {
+                input.hash = ContentHash.of(f);
+            }
+            inputs.add(input);
+        }
+        return inputs;
+    }
+
+    /**
+     * Check whether the bundle was previously created from the given inputs and is unchanged since.
+     * @param name The bundle file name.
+     * @param settings The plugin version and every setting that affects the bundle contents.
+     * @param inputs The input fingerprints, as returned by {@link #fingerprint(String, List, BuildContext)}.
+     * @param bundle The bundle file.
+     * @return True if the bundle does not need to be created again.
+     * @throws IOException If the bundle file could not be read.
+     */
+    boolean isUpToDate(final String name, final String settings, final List<Input> inputs, final File bundle) throws IOException {
+        final Entry entry = previous.get(name);
+        if (entry == null || entry.output == null || !bundle.isFile()) {
+            return false;
+        }
+        if (!hash(settings).equals(entry.settings)) {
+            return false;
+        }
+        if (!inputs.equals(entry.inputs)) {
+            return false;
+        }
+        if (!entry.output.equals(ContentHash.of(bundle))) {
+            return false;
+        }
+        final Entry updated = new Entry();
+        updated.settings = entry.settings;
+        updated.inputs = inputs;
+        updated.output = entry.output;
+        updated.segments = entry.segments;
+        current.put(name, updated);
+        return true;
+    }
+
+    /**
+     * Record the inputs and output of a bundle that was just created.
+     * @param name The bundle file name.
+     * @param settings The plugin version and every setting that affects the bundle contents.
+     * @param inputs The input fingerprints.
+     * @param output The content hash of the bundle file.
+     * @param segments The number of bytes each input takes up in the bundle file.
+     */
+    void update(final String name, final String settings, final List<Input> inputs, final String output, final long[] segments) {
+        final Entry entry = new Entry();
+        entry.settings = hash(settings);
+        entry.inputs = inputs;
+        entry.output = output;
+        entry.segments = segments;
+        current.put(name, entry);
+    }
+
+    /**
+     * Get the content hash of a bundle recorded during this build.
+     * @param name The bundle file name.
+     * @return The content hash of the bundle file, or null if none was recorded.
+     */
+    String getOutput(final String name) {
+        final Entry entry = current.get(name);
+        return entry == null ? null : entry.output;
+    }
+
+    /**
+     * Get the number of bytes each input of a bundle recorded during this build takes up in the bundle file.
+     * @param name The bundle file name.
+     * @return The size of every input in the bundle, in bundle order, or null if none was recorded.
+     */
+    long[] getSegments(final String name) {
+        final Entry entry = current.get(name);
+        return entry == null ? null : entry.segments;
+    }
+
+    /**
+     * Forget a bundle that no longer exists.
+     * @param name The bundle file name.
+     */
+    void remove(final String name) {
+        current.remove(name);
+    }
+
+    /**
+     * Write the bundles recorded during this build to the manifest file. Bundles that no longer exist are dropped.
+     * @throws IOException If the manifest could not be written.
+     */
+    void save() throws IOException {
+        FileUtils.writeStringToFile(file, GSON.toJson(new TreeMap<>(current)), UTF_8);
+    }
+
+    private static String hash(final String settings) {
+        return ContentHash.toHex(ContentHash.newDigest().digest(settings.getBytes(UTF_8)));
+    }
+
+    /**
+     * The recorded settings, inputs and output of a single bundle.
+     */
+    static final class Entry {
+        String settings;
+        List<Input> inputs;
+        String output;
+        long[] segments;
+    }
+
+    /**
+     * The fingerprint of a single bundle input file.
+     */
+    static final class Input {
+        String path;
+        long size;
+        long lastModified;
+        String hash;
+
+        Input(final String path, final long size, final long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Two inputs are the same if they are the same file with the same contents. The size and last
+         * modified time only decide whether the contents need to be hashed again.
+         */
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Input)) {
+                return false;
+            }
+            final Input other = (Input) o;
+            return path.equals(other.path) && hash != null && hash.equals(other.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return path.hashCode();
+        }
+    }
+}
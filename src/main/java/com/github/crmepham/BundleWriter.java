@@ -0,0 +1,138 @@
+package com.github.crmepham;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.UUID;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * <p>Streams the contents of a bundle straight to disk.</p>
+ *
+ * <p>
+ *     The contents are written through a buffered writer to a file channel on a temporary file
+ *     alongside the bundle file. The content hash and size are computed as the bytes are written,
+ *     so the bundle never needs to be read back. Once {@link #commit()} is called the temporary file
+ *     atomically replaces the bundle file. Closing the writer without committing discards it.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class BundleWriter implements Closeable {
+
+    private final File file;
+    private final Path temp;
+    private final MessageDigest digest = ContentHash.newDigest();
+    private final Metered.Output counter;
+    private final Writer writer;
+    private String hash;
+    private boolean committed;
+
+    BundleWriter(final File file) throws IOException {
+        this.file = file;
+        final File directory = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(directory.toPath());
+        this.temp = directory.toPath().resolve(file.getName() + "." + UUID.randomUUID() + ".tmp");
+        final FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.counter = new Metered.Output(new DigestOutputStream(Channels.newOutputStream(channel), digest));
+        this.writer = new BufferedWriter(new OutputStreamWriter(counter, UTF_8), 65536);
+    }
+
+    /**
+     * Get the writer the bundle contents should be written to. It must not be closed by the caller.
+     * @return The writer.
+     */
+    Writer getWriter() {
+        return writer;
+    }
+
+    /**
+     * Copy a range of bytes from the given file to the bundle as they are.
+     * @param source The file to copy from.
+     * @param position The offset of the first byte to copy.
+     * @param count The number of bytes to copy.
+     * @throws IOException If the file could not be read, or the bytes could not be written.
+     */
+    void append(final File source, final long position, final long count) throws IOException {
+        writer.flush();
+        try (InputStream in = Files.newInputStream(source.toPath())) {
+            IOUtils.copyLarge(in, counter, position, count);
+        }
+    }
+
+    /**
+     * Get the number of bytes written so far, including any that are still buffered.
+     * @return The number of bytes written.
+     * @throws IOException If the buffered contents could not be written.
+     */
+    long getSize() throws IOException {
+        writer.flush();
+        return counter.getBytes();
+    }
+
+    /**
+     * Get the time spent writing to disk so far, including writing any contents that are still buffered.
+     * @return The time spent writing, in nanoseconds.
+     * @throws IOException If the buffered contents could not be written.
+     */
+    long getWriteNanos() throws IOException {
+        writer.flush();
+        return counter.getNanos();
+    }
+
+    /**
+     * Get the hash of the bundle contents. Only available once the bundle has been committed.
+     * @return The hex encoded content hash.
+     */
+    String getHash() {
+        return hash;
+    }
+
+    /**
+     * Get the bundle file this writer replaces on commit.
+     * @return The bundle file.
+     */
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Finish writing the bundle and atomically move it into place.
+     * @throws IOException If the bundle could not be written or moved.
+     */
+    void commit() throws IOException {
+        writer.close();
+        hash = ContentHash.toHex(digest.digest());
+        AtomicFiles.move(temp, file.toPath());
+        committed = true;
+    }
+
+    /**
+     * Discard the bundle contents, unless the bundle has already been committed.
+     * @throws IOException If the temporary file could not be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            try {
+                writer.close();
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.crmepham;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Plans how a bundle is split into ordered chunks of a maximum size.</p>
+ *
+ * <p>
+ *     A bundle is only ever split between the files it was created from, so every chunk can be loaded
+ *     on its own. Files are added to a chunk in bundle order until the next one would take it over the
+ *     maximum size, at which point a new chunk is started. A single file larger than the maximum size
+ *     gets a chunk to itself.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class ChunkSplitter {
+
+    private ChunkSplitter() {
+    }
+
+    /**
+     * Plan the chunks of a bundle.
+     * @param segments The number of bytes each file takes up in the bundle, in bundle order.
+     * @param maxSize The maximum number of bytes in a chunk.
+     * @return The number of bytes in each chunk, in bundle order.
+     */
+    static List<Long> plan(final long[] segments, final long maxSize) {
+        final List<Long> chunks = new ArrayList<>();
+        long size = 0;
+        for (long segment : segments) {
+            if (size > 0 && size + segment > maxSize) {
+                chunks.add(size);
+                size = 0;
+            }
+            size += segment;
+        }
+        if (size > 0 || chunks.isEmpty()) {
+            chunks.add(size);
+        }
+        return chunks;
+    }
+
+    /**
+     * Get the name of a chunk of a bundle file.
+     * @param name The bundle file name, such as <em>app-bundle.js</em>.
+     * @param index The index of the chunk, starting at zero.
+     * @return The chunk file name, such as <em>app-bundle.0.js</em>.
+     */
+    static String chunkName(final String name, final int index) {
+        final int dot = name.lastIndexOf('.');
+        return dot < 0 ? name + "." + index : name.substring(0, dot) + "." + index + name.substring(dot);
+    }
+
+    /**
+     * Get the total number of bytes of the given segments.
+     * @param segments The segment sizes.
+     * @return The total size.
+     */
+    static long total(final long[] segments) {
+        long total = 0;
+        for (long segment : segments) {
+            total += segment;
+        }
+        return total;
+    }
+}
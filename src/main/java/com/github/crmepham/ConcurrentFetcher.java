@@ -0,0 +1,237 @@
+package com.github.crmepham;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * <p>Fetches every external dependency up front and concurrently.</p>
+ *
+ * <p>
+ *     Each distinct URI is fetched once, on a pool of worker threads, with a limit on the number of
+ *     concurrent requests made to any single host. Every host has a queue of its own, and a fetch is only
+ *     handed to the pool once its host is below the limit, so the fetches of a slow host never take up
+ *     the workers that the fetches of other hosts are waiting for. Dependencies are fetched through the
+ *     {@link HttpCache} when it is enabled, and then linked into a staging directory, so that another
+ *     build sharing the cache cannot delete them before they are bundled. Otherwise they are downloaded
+ *     to the staging directory. Either way the result is a local file for every URI, so the bundles can then be assembled
+ *     in their declared order without waiting on the network. The whole fetch must complete within
+ *     the given time budget.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class ConcurrentFetcher {
+
+    private final Log log;
+    private final BuildReport report;
+    private final HttpCache cache;
+    private final File downloads;
+    private final boolean offline;
+    private final int threads;
+    private final int threadsPerHost;
+    private final long timeout;
+
+    /**
+     * @param log The log.
+     * @param report The build report to record the time taken to fetch each dependency in.
+     * @param cache The external dependencies cache, or <code>null</code> if it is disabled.
+     * @param downloads The staging directory to download, or link, every dependency to.
+     * @param offline If true, dependencies are only served from the cache.
+     * @param threads The maximum number of concurrent requests.
+     * @param threadsPerHost The maximum number of concurrent requests to a single host.
+     * @param timeout The time budget for fetching every dependency, in milliseconds.
+     */
+    ConcurrentFetcher(final Log log, final BuildReport report, final HttpCache cache, final File downloads, final boolean offline,
+                      final int threads, final int threadsPerHost, final long timeout) {
+        this.log = log;
+        this.report = report;
+        this.cache = cache;
+        this.downloads = downloads;
+        this.offline = offline;
+        this.threads = Math.max(1, threads);
+        this.threadsPerHost = Math.max(1, threadsPerHost);
+        this.timeout = timeout;
+    }
+
+    /**
+     * Fetch the given URIs.
+     * @param uris The URIs, which may contain duplicates.
+     * @return The map of URI to the local file holding its contents, in the order the URIs were given.
+     * @throws IOException If any of the URIs could not be fetched, or the time budget was exceeded.
+     */
+    Map<String, File> fetchAll(final List<String> uris) throws IOException {
+        final List<String> distinct = new ArrayList<>(new LinkedHashSet<>(uris));
+        final Map<String, File> files = new LinkedHashMap<>();
+        if (distinct.isEmpty()) {
+            return files;
+        }
+        if (offline && cache == null) {
+            throw new IOException("Offline mode requires the external dependencies cache to be enabled.");
+        }
+
+        final ExecutorService executor = Workers.newPool("resource-bundler-fetch", Math.min(threads, distinct.size()));
+        try {
+            final Map<String, HostQueue> hosts = new HashMap<>();
+            final List<CompletableFuture<File>> futures = new ArrayList<>();
+            for (String uri : distinct) {
+                final CompletableFuture<File> future = new CompletableFuture<>();
+                futures.add(future);
+                hosts.computeIfAbsent(host(uri), h -> new HostQueue(executor, threadsPerHost)).add(() -> {
+                    try {
+                        future.complete(fetch(uri));
+                    } catch (Exception e) {
+                        future.completeExceptionally(e);
+                    }
+                });
+            }
+
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            final List<String> errors = new ArrayList<>();
+            for (int i = 0, j = distinct.size(); i < j; i++) {
+                final String uri = distinct.get(i);
+                try {
+                    files.put(uri, futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                } catch (ExecutionException e) {
+                    errors.add(format("%s (%s)", uri, e.getCause().getMessage()));
+                } catch (TimeoutException e) {
+                    throw new IOException(format("Fetching %s external dependencies took longer than %sms. Still waiting for: %s", distinct.size(), timeout, uri));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while fetching: " + uri);
+                }
+            }
+
+            if (!errors.isEmpty()) {
+                for (String error : errors) {
+                    log.error("Failed to fetch external dependency from: " + error);
+                }
+                throw new IOException(format("Failed to fetch %s of %s external dependencies.", errors.size(), distinct.size()));
+            }
+            return files;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private File fetch(final String uri) throws IOException {
+        log.info("Fetching external dependency: " + uri);
+        final long start = System.nanoTime();
+        final File file;
+        Files.createDirectories(downloads.toPath());
+        if (cache != null) {
+            file = stage(uri);
+        } else {
+            file = new File(downloads, ContentHash.toHex(ContentHash.newDigest().digest(uri.getBytes(UTF_8))));
+            ExternalDependencyFetcher.download(uri, file);
+        }
+        report.fetched(uri, System.nanoTime() - start, file.length());
+        return file;
+    }
+
+    /**
+     * Fetch a URI through the cache, and link the cached body into the staging directory. If another build
+     * evicts the body from the cache before it is linked, it is fetched again.
+     */
+    private File stage(final String uri) throws IOException {
+        final Path staged = downloads.toPath().resolve(ContentHash.toHex(ContentHash.newDigest().digest(uri.getBytes(UTF_8))));
+        for (int attempt = 1; ; attempt++) {
+            final Path body = cache.fetch(uri, offline).toPath();
+            try {
+                Files.deleteIfExists(staged);
+                try {
+                    Files.createLink(staged, body);
+                } catch (NoSuchFileException e) {
+                    throw e;
+                } catch (IOException | UnsupportedOperationException e) {
+                    // The cache may be on another file system.
+                    Files.copy(body, staged, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return staged.toFile();
+            } catch (NoSuchFileException e) {
+                if (attempt == 3) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static String host(final String uri) {
+        try {
+            final String host = URI.create(uri).getHost();
+            return host == null ? "" : host.toLowerCase();
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    /**
+     * The fetches of a single host, which are handed to the pool no more than the limit at a time, in the
+     * order they were added.
+     */
+    private static final class HostQueue {
+
+        private final Executor executor;
+        private final int limit;
+        private final Deque<Runnable> pending = new ArrayDeque<>();
+        private int running;
+
+        HostQueue(final Executor executor, final int limit) {
+            this.executor = executor;
+            this.limit = limit;
+        }
+
+        synchronized void add(final Runnable fetch) {
+            pending.add(fetch);
+            dispatch();
+        }
+
+        private synchronized void dispatch() {
+            while (running < limit && !pending.isEmpty()) {
+                final Runnable fetch = pending.poll();
+                try {
+                    executor.execute(() -> {
+                        try {
+                            fetch.run();
+                        } finally {
+                            finished();
+                        }
+                    });
+                    running++;
+                } catch (RejectedExecutionException e) {
+                    // The pool was shut down, so the remaining fetches were abandoned.
+                    pending.clear();
+                }
+            }
+        }
+
+        private synchronized void finished() {
+            running--;
+            dispatch();
+        }
+    }
+}
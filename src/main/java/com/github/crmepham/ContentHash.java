@@ -0,0 +1,65 @@
+package com.github.crmepham;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the content hashes used to detect changes to bundle inputs and outputs.
+ *
+ * @author Christopher Mepham
+ */
+final class ContentHash {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ContentHash() {
+    }
+
+    /**
+     * Create a new digest for the hash algorithm used throughout the plugin.
+     * @return A new <em>SHA-256</em> message digest.
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM.", e);
+        }
+    }
+
+    /**
+     * Get the hash of the contents of the given file. The file is streamed, not read into memory.
+     * @param file The file.
+     * @return The hex encoded hash of the file contents.
+     * @throws IOException If the file could not be read.
+     */
+    static String of(final File file) throws IOException {
+        final MessageDigest digest = newDigest();
+        final byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Encode the given bytes as lower case hex.
+     * @param bytes The bytes, typically a digest.
+     * @return The hex encoded bytes.
+     */
+    static String toHex(final byte[] bytes) {
+        final char[] chars = new char[bytes.length * 2];
+        for (int i = 0, j = bytes.length; i < j; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,253 @@
+package com.github.crmepham;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * <p>Inlines the small images and fonts referenced by <em>CSS</em> files as data URIs, and rewrites the
+ * relative URLs of the others so that they still resolve from the bundle.</p>
+ *
+ * <p>
+ *     Every relative <em>url()</em> is resolved against the file it appears in. Images and fonts of at most the
+ *     maximum size are replaced with a base64 encoded data URI, saving a request each. Every other URL is made
+ *     relative to the source directory, which is where the bundle ends up when the source directory is copied
+ *     to the target directory, with leading <em>../</em> segments when it resolves outside of it. URLs with a
+ *     query or fragment, such as <em>font.eot?#iefix</em>, are only rewritten. Absolute URLs, data URIs and
+ *     fragments such as <em>#filter</em> are left as they are. Encoded assets are kept in a bounded, least
+ *     recently used cache, so an asset shared between files and bundles is only read and encoded once for as
+ *     long as it does not change. Files may be rewritten from several threads at once.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class CssAssetInliner {
+
+    private static final Pattern URL = Pattern.compile("url\\(\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\"')\\s]*))\\s*\\)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * The maximum number of characters of encoded assets to keep in memory.
+     */
+    private static final long MAX_CACHE_SIZE = 16 * 1024 * 1024;
+
+    private static final Map<String, String> TYPES = new HashMap<>();
+
+    static {
+        TYPES.put("png", "image/png");
+        TYPES.put("gif", "image/gif");
+        TYPES.put("jpg", "image/jpeg");
+        TYPES.put("jpeg", "image/jpeg");
+        TYPES.put("svg", "image/svg+xml");
+        TYPES.put("webp", "image/webp");
+        TYPES.put("avif", "image/avif");
+        TYPES.put("bmp", "image/bmp");
+        TYPES.put("ico", "image/x-icon");
+        TYPES.put("woff", "font/woff");
+        TYPES.put("woff2", "font/woff2");
+        TYPES.put("ttf", "font/ttf");
+        TYPES.put("otf", "font/otf");
+        TYPES.put("eot", "application/vnd.ms-fontobject");
+    }
+
+    private final Path root;
+    private final long maxSize;
+    private final Log log;
+    private final Map<Path, Encoded> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private long cacheSize;
+
+    /**
+     * @param root The source directory.
+     * @param maxSize The maximum size, in bytes, of an asset to inline.
+     * @param log The log to report missing assets to.
+     */
+    CssAssetInliner(final File root, final long maxSize, final Log log) {
+        this.root = root.getAbsoluteFile().toPath().normalize();
+        this.maxSize = maxSize;
+        this.log = log;
+    }
+
+    /**
+     * Find the images and fonts that the given files may inline, so that a bundle is created again when any
+     * of them change.
+     * @param files The <em>CSS</em> files.
+     * @return The existing assets, in the order they are first referenced.
+     * @throws IOException If a file could not be read.
+     */
+    List<File> assets(final List<File> files) throws IOException {
+        final Set<File> assets = new LinkedHashSet<>();
+        for (File file : files) {
+            final Matcher matcher = URL.matcher(new String(Files.readAllBytes(file.toPath()), UTF_8));
+            while (matcher.find()) {
+                final Path asset = resolve(file, url(matcher));
+                if (asset != null && isInlinable(url(matcher), asset) && Files.isRegularFile(asset)) {
+                    assets.add(asset.toFile());
+                }
+            }
+        }
+        return new ArrayList<>(assets);
+    }
+
+    /**
+     * Inline the small assets referenced by a <em>CSS</em> file, and rewrite the URLs of the others.
+     * @param css The minified contents of the file.
+     * @param file The file, which relative URLs are resolved against.
+     * @return The contents with every relative URL inlined or rewritten.
+     * @throws IOException If an asset could not be read.
+     */
+    String rewrite(final String css, final File file) throws IOException {
+        final Matcher matcher = URL.matcher(css);
+        StringBuilder result = null;
+        int position = 0;
+        while (matcher.find()) {
+            final String url = url(matcher);
+            final Path asset = resolve(file, url);
+            if (asset == null) {
+                continue;
+            }
+
+            final String replacement;
+            if (isInlinable(url, asset) && Files.isRegularFile(asset) && Files.size(asset) <= maxSize) {
+                replacement = "url(" + encode(asset) + ")";
+            } else {
+                if (!Files.exists(asset)) {
+                    log.warn(format("The asset '%s' referenced by '%s' does not exist.", url, root.relativize(file.getAbsoluteFile().toPath().normalize())));
+                }
+                final String quote = matcher.group(1) != null ? "\"" : matcher.group(2) != null ? "'" : "";
+                replacement = "url(" + quote + root.relativize(asset).toString().replace(File.separatorChar, '/') + suffix(url) + quote + ")";
+            }
+
+            if (result == null) {
+                result = new StringBuilder(css.length());
+            }
+            result.append(css, position, matcher.start()).append(replacement);
+            position = matcher.end();
+        }
+        return result == null ? css : result.append(css, position, css.length()).toString();
+    }
+
+    private static String url(final Matcher matcher) {
+        return matcher.group(1) != null ? matcher.group(1) : matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+    }
+
+    /**
+     * Resolve a relative URL against the file it appears in.
+     * @return The asset, or null if the URL is not relative.
+     */
+    private Path resolve(final File file, final String url) {
+        if (url.isEmpty() || url.startsWith("/") || url.startsWith("#") || url.matches("[a-zA-Z][a-zA-Z0-9+.-]*:.*")) {
+            return null;
+        }
+        final String path = url.substring(0, url.length() - suffix(url).length());
+        if (path.isEmpty()) {
+            return null;
+        }
+        try {
+            return file.getAbsoluteFile().toPath().resolveSibling(path).normalize();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String suffix(final String url) {
+        for (int i = 0; i < url.length(); i++) {
+            if (url.charAt(i) == '?' || url.charAt(i) == '#') {
+                return url.substring(i);
+            }
+        }
+        return "";
+    }
+
+    private static boolean isInlinable(final String url, final Path asset) {
+        return suffix(url).isEmpty() && TYPES.containsKey(extension(asset));
+    }
+
+    private static String extension(final Path asset) {
+        final String name = asset.getFileName().toString();
+        return name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Get the data URI of an asset, encoding it unless the cache holds a current copy.
+     */
+    private String encode(final Path asset) throws IOException {
+        Encoded entry;
+        synchronized (cache) {
+            entry = cache.get(asset);
+            if (entry == null || !entry.isCurrent(asset)) {
+                remove(asset);
+                entry = new Encoded(Files.size(asset), Files.getLastModifiedTime(asset).toMillis());
+                cache.put(asset, entry);
+            }
+        }
+
+        synchronized (entry) {
+            if (entry.uri == null) {
+                entry.uri = "data:" + TYPES.get(extension(asset)) + ";base64," + Base64.getEncoder().encodeToString(Files.readAllBytes(asset));
+                synchronized (cache) {
+                    if (cache.get(asset) == entry) {
+                        entry.counted = true;
+                        cacheSize += entry.uri.length();
+                        evict();
+                    }
+                }
+            }
+            return entry.uri;
+        }
+    }
+
+    private void remove(final Path asset) {
+        final Encoded removed = cache.remove(asset);
+        if (removed != null && removed.counted) {
+            cacheSize -= removed.uri.length();
+        }
+    }
+
+    private void evict() {
+        final Iterator<Encoded> iterator = cache.values().iterator();
+        while (cacheSize > MAX_CACHE_SIZE && iterator.hasNext()) {
+            final Encoded eldest = iterator.next();
+            iterator.remove();
+            if (eldest.counted) {
+                cacheSize -= eldest.uri.length();
+            }
+        }
+    }
+
+    /**
+     * The data URI of an asset, along with the size and last modified time of the asset it was encoded from.
+     */
+    private static final class Encoded {
+
+        private final long size;
+        private final long lastModified;
+        private String uri;
+        private boolean counted;
+
+        Encoded(final long size, final long lastModified) {
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        boolean isCurrent(final Path asset) throws IOException {
+            return size == Files.size(asset) && lastModified == Files.getLastModifiedTime(asset).toMillis();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.github.crmepham;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * <p>Inlines the <em>@import</em> statements of local <em>CSS</em> files into their bundle.</p>
+ *
+ * <p>
+ *     An <em>@import</em> must come before every rule of a file, so inlining it is the same as bundling the
+ *     imported file just before the file that imports it. The files of a bundle are therefore put into the
+ *     order of their import graph, depth first, with every file added only once, where it is first needed.
+ *     Once each file is minified, {@link #strip(String, File, File)} removes the <em>@import</em> statements
+ *     that were inlined. Only imports of an existing file in the source directory, by a relative URL without
+ *     any media query or other condition, are inlined. A cycle of imports is broken where it would close, as
+ *     browsers do, and reported. Imports of missing files or of files outside the source directory are
+ *     reported and kept, as are imports with a condition, with their relative URLs rewritten so that they
+ *     still resolve from the bundle.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class CssImportResolver {
+
+    private CssImportResolver() {
+    }
+
+    /**
+     * Put the files of a bundle into import order, adding every imported file before the first file that
+     * imports it. A file that is already in the bundle is only added once.
+     * @param files The files of the bundle, in bundle order.
+     * @param root The source directory. Files outside of it are not inlined.
+     * @param log The log to report cycles and missing files to.
+     * @return The files in import order.
+     * @throws IOException If a file could not be read.
+     */
+    static List<File> resolve(final List<File> files, final File root, final Log log) throws IOException {
+        final Path base = normalize(root);
+        final Map<Path, File> given = new HashMap<>();
+        for (File file : files) {
+            given.putIfAbsent(normalize(file), file);
+        }
+
+        final List<File> resolved = new ArrayList<>(files.size());
+        final Set<Path> visited = new HashSet<>();
+        final Deque<Path> stack = new ArrayDeque<>();
+        for (File file : files) {
+            visit(normalize(file), base, given, visited, stack, resolved, log);
+        }
+        return resolved;
+    }
+
+    private static void visit(final Path path, final Path base, final Map<Path, File> given, final Set<Path> visited,
+                              final Deque<Path> stack, final List<File> resolved, final Log log) throws IOException {
+        if (stack.contains(path)) {
+            final StringBuilder cycle = new StringBuilder();
+            final Iterator<Path> iterator = stack.descendingIterator();
+            boolean started = false;
+            while (iterator.hasNext()) {
+                final Path next = iterator.next();
+                started |= next.equals(path);
+                if (started) {
+                    cycle.append(base.relativize(next)).append(" -> ");
+                }
+            }
+            log.warn(format("Ignoring @import cycle: %s%s", cycle, base.relativize(path)));
+            return;
+        }
+        if (!visited.add(path)) {
+            return;
+        }
+
+        stack.push(path);
+        for (Import statement : parse(new String(Files.readAllBytes(path), UTF_8))) {
+            if (!statement.inline) {
+                continue;
+            }
+            final Path target = path.resolveSibling(statement.url).normalize();
+            if (!target.startsWith(base)) {
+                log.warn(format("Keeping @import of '%s' in '%s'. It is outside of the source directory.", statement.url, base.relativize(path)));
+            } else if (!Files.isRegularFile(target)) {
+                log.warn(format("Keeping @import of '%s' in '%s'. The file does not exist.", statement.url, base.relativize(path)));
+            } else {
+                visit(target, base, given, visited, stack, resolved, log);
+            }
+        }
+        stack.pop();
+        resolved.add(given.getOrDefault(path, path.toFile()));
+    }
+
+    private static Path normalize(final File file) {
+        return file.getAbsoluteFile().toPath().normalize();
+    }
+
+    /**
+     * Remove every <em>@import</em> statement that is inlined, and rewrite the relative URLs of the others so
+     * that they resolve from the bundle, which ends up where the source directory is copied to.
+     * @param css The minified contents of a <em>CSS</em> file.
+     * @param file The file, which relative URLs are resolved against.
+     * @param root The source directory.
+     * @return The contents without the inlined statements.
+     */
+    static String strip(final String css, final File file, final File root) {
+        final List<Import> statements = parse(css);
+        if (statements.isEmpty()) {
+            return css;
+        }
+        final Path base = normalize(root);
+        final Path path = normalize(file);
+        final StringBuilder result = new StringBuilder(css.length());
+        int position = 0;
+        for (Import statement : statements) {
+            if (!statement.local) {
+                continue;
+            }
+            result.append(css, position, statement.start);
+            position = statement.end;
+            final Path target;
+            try {
+                target = path.resolveSibling(statement.url).normalize();
+            } catch (IllegalArgumentException e) {
+                result.append(css, statement.start, statement.end);
+                continue;
+            }
+            if (statement.conditions.isEmpty() && target.startsWith(base) && Files.isRegularFile(target)) {
+                continue;
+            }
+            result.append("@import \"").append(base.relativize(target).toString().replace(File.separatorChar, '/')
+                    .replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            if (!statement.conditions.isEmpty()) {
+                result.append(' ').append(statement.conditions);
+            }
+            result.append(';');
+        }
+        return result.append(css, position, css.length()).toString();
+    }
+
+    /**
+     * Find the <em>@import</em> statements at the start of a file, which may only be preceded by a
+     * <em>@charset</em> statement, comments and whitespace.
+     * @param css The contents of a <em>CSS</em> file.
+     * @return The statements, in order.
+     */
+    static List<Import> parse(final String css) {
+        final List<Import> statements = new ArrayList<>();
+        int i = 0;
+        while (true) {
+            i = skip(css, i);
+            if (startsWith(css, i, "@charset")) {
+                i = end(css, i);
+            } else if (startsWith(css, i, "@import")) {
+                final int end = end(css, i);
+                final Import statement = parseImport(css.substring(i + "@import".length(), css.charAt(end - 1) == ';' ? end - 1 : end).trim(), i, end);
+                if (statement == null) {
+                    return statements;
+                }
+                statements.add(statement);
+                i = end;
+            } else {
+                return statements;
+            }
+        }
+    }
+
+    private static Import parseImport(final String body, final int start, final int end) {
+        final String url;
+        final String rest;
+        if (body.startsWith("\"") || body.startsWith("'")) {
+            final int close = body.indexOf(body.charAt(0), 1);
+            if (close < 0) {
+                return null;
+            }
+            url = body.substring(1, close);
+            rest = body.substring(close + 1);
+        } else if (startsWith(body, 0, "url(")) {
+            final int close = body.indexOf(')');
+            if (close < 0) {
+                return null;
+            }
+            String value = body.substring(4, close).trim();
+            if (value.length() > 1 && (value.charAt(0) == '"' || value.charAt(0) == '\'') && value.charAt(value.length() - 1) == value.charAt(0)) {
+                value = value.substring(1, value.length() - 1);
+            }
+            url = value;
+            rest = body.substring(close + 1);
+        } else {
+            return null;
+        }
+        return new Import(start, end, url, rest.trim(), isLocal(url));
+    }
+
+    private static boolean isLocal(final String url) {
+        return !url.isEmpty() && !url.startsWith("/") && url.indexOf('?') < 0 && url.indexOf('#') < 0
+                && !url.matches("[a-zA-Z][a-zA-Z0-9+.-]*:.*");
+    }
+
+    /**
+     * Skip whitespace and comments.
+     */
+    private static int skip(final String css, int i) {
+        while (i < css.length()) {
+            if (Character.isWhitespace(css.charAt(i))) {
+                i++;
+            } else if (css.startsWith("/*", i)) {
+                final int close = css.indexOf("*/", i + 2);
+                i = close < 0 ? css.length() : close + 2;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Find the end of the statement starting at the given index, just after its semi-colon, skipping
+     * over strings and parentheses.
+     */
+    private static int end(final String css, int i) {
+        int depth = 0;
+        while (i < css.length()) {
+            final char c = css.charAt(i++);
+            if (c == '"' || c == '\'') {
+                while (i < css.length() && css.charAt(i) != c) {
+                    i += css.charAt(i) == '\\' ? 2 : 1;
+                }
+                i++;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+            } else if (c == ';' && depth == 0) {
+                return i;
+            }
+        }
+        return css.length();
+    }
+
+    private static boolean startsWith(final String css, final int i, final String prefix) {
+        return css.regionMatches(true, i, prefix, 0, prefix.length());
+    }
+
+    /**
+     * A single <em>@import</em> statement.
+     */
+    static final class Import {
+
+        /**
+         * The index of the first character of the statement.
+         */
+        final int start;
+
+        /**
+         * The index just after the statement.
+         */
+        final int end;
+
+        /**
+         * The URL of the imported file.
+         */
+        final String url;
+
+        /**
+         * The media query or other conditions after the URL, or an empty string for none.
+         */
+        final String conditions;
+
+        /**
+         * Whether the URL is relative, so that the imported file may be inlined.
+         */
+        final boolean local;
+
+        /**
+         * Whether the imported file is inlined, if it exists in the source directory.
+         */
+        final boolean inline;
+
+        Import(final int start, final int end, final String url, final String conditions, final boolean local) {
+            this.start = start;
+            this.end = end;
+            this.url = url;
+            this.conditions = conditions;
+            this.local = local;
+            this.inline = local && conditions.isEmpty();
+        }
+    }
+}
@@ -1,26 +1,323 @@
 package com.github.crmepham;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
 
 /**
- * Contains static method that will perform minification of supplied file contents.
+ * <p>Minifies <em>CSS</em> in a single pass, reading from a {@link Reader} and writing to a {@link Writer}.</p>
+ *
+ * <p>
+ *     Comments are removed, runs of whitespace are collapsed to a single space, and that space is
+ *     dropped wherever it is not significant, for example either side of braces, semi-colons and
+ *     commas. Whitespace is kept between selectors such as <em>a b</em> and in media queries such
+ *     as <em>screen and (max-width:100px)</em>. Strings and unquoted <em>url()</em> values are copied
+ *     verbatim. The last semi-colon in a block is removed.
+ * </p>
  *
  * @author Christopher Mepham
  */
 class CssMinifier extends Minifier {
 
     /**
-     * Minifies the given file contents based on the file extension.
+     * Characters after which whitespace is never significant.
+     */
+    private static final boolean[] NO_SPACE_AFTER = table("{};,>(:");
+
+    /**
+     * Characters before which whitespace is never significant.
+     */
+    private static final boolean[] NO_SPACE_BEFORE = table("{};,>)!");
+
+    /**
+     * Minifies the given file contents.
      * @param input The file contents as a String.
      * @return The minified file contents.
      */
+    @Override
     String minify(String input) throws IOException {
-        input = super.minify(input);
+        final StringWriter writer = new StringWriter(input.length());
+        minify(new StringReader(input), writer);
+        return writer.toString();
+    }
+
+    /**
+     * Minifies the contents of the reader, writing the result to the writer. Neither is closed.
+     * @param in The unminified <em>CSS</em>.
+     * @param out Where to write the minified <em>CSS</em>.
+     * @throws IOException If something went wrong.
+     */
+    @Override
+    public void minify(Reader in, Writer out) throws IOException {
+        new Tokenizer(in, out).run();
+    }
+
+    @Override
+    public String getCacheKey() {
+        return super.getCacheKey() + ":2";
+    }
+
+    private static boolean[] table(final String characters) {
+        final boolean[] table = new boolean[128];
+        for (int i = 0, j = characters.length(); i < j; i++) {
+            table[characters.charAt(i)] = true;
+        }
+        return table;
+    }
+
+    private static boolean contains(final boolean[] table, final int c) {
+        return c >= 0 && c < table.length && table[c];
+    }
+
+    private static boolean isWhitespace(final int c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+
+    /**
+     * Holds the state of a single minification. Input and output are buffered here so that the
+     * reader and writer are only called once per buffer.
+     */
+    private static final class Tokenizer {
+
+        private final Reader in;
+        private final Writer out;
+        private final char[] input = new char[8192];
+        private final char[] output = new char[8192];
+        private int position;
+        private int limit;
+        private int pushedBack = -1;
+        private int length;
+
+        /**
+         * The last three characters written, the most recent first, used to recognise <em>url(</em>.
+         */
+        private int last = -1;
+        private int secondLast = -1;
+        private int thirdLast = -1;
+
+        private boolean pendingSpace;
+        private boolean pendingSemicolon;
+
+        /**
+         * Whether the current block holds declarations, where whitespace before a colon is not significant,
+         * rather than rules, where it may be part of a selector such as <em>a :hover</em>.
+         */
+        private boolean declarations;
+        private boolean[] enclosing = new boolean[16];
+        private int depth;
+
+        /**
+         * Whether the next character starts a new rule or statement, and if that is an at-rule, its name.
+         */
+        private boolean statementStart = true;
+        private boolean atRule;
+        private boolean atRuleNameComplete;
+        private final char[] atRuleName = new char[16];
+        private int atRuleNameLength;
+
+        Tokenizer(final Reader in, final Writer out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        void run() throws IOException {
+            int c;
+            while ((c = read()) != -1) {
+                if (c == '/') {
+                    final int next = read();
+                    if (next == '*') {
+                        skipComment();
+                        continue;
+                    }
+                    unread(next);
+                    token(c);
+                } else if (isWhitespace(c)) {
+                    pendingSpace = true;
+                } else if (c == '"' || c == '\'') {
+                    token(c);
+                    copyString(c);
+                } else if (c == '(' && isUrl()) {
+                    token(c);
+                    copyUrl();
+                } else {
+                    token(c);
+                }
+            }
+
+            // A trailing semi-colon may be separating this file from the next one in the bundle.
+            if (pendingSemicolon) {
+                write(';');
+            }
+            out.write(output, 0, length);
+        }
+
+        /**
+         * Write a significant character, first writing any pending semi-colon and whitespace that
+         * still turn out to be needed. Semi-colons are held back until it is known whether they
+         * close a block.
+         */
+        private void token(final int c) throws IOException {
+            if (pendingSemicolon) {
+                if (c == ';') {
+                    return;
+                }
+                pendingSemicolon = false;
+                if (c != '}') {
+                    write(';');
+                }
+            }
+            if (pendingSpace) {
+                pendingSpace = false;
+                if (last != -1 && !contains(NO_SPACE_AFTER, last) && !contains(NO_SPACE_BEFORE, c) && !(c == ':' && declarations)) {
+                    write(' ');
+                }
+            }
+            track(c);
+            if (c == ';') {
+                pendingSemicolon = true;
+                return;
+            }
+            write(c);
+        }
+
+        /**
+         * Keep track of whether the current block holds declarations or rules.
+         */
+        private void track(final int c) {
+            if (statementStart) {
+                statementStart = false;
+                atRule = c == '@';
+                atRuleNameComplete = !atRule;
+                atRuleNameLength = 0;
+            } else if (!atRuleNameComplete) {
+                if ((Character.isLetter(c) || c == '-') && atRuleNameLength < atRuleName.length) {
+                    atRuleName[atRuleNameLength++] = Character.toLowerCase((char) c);
+                } else {
+                    atRuleNameComplete = true;
+                }
+            }
+
+            if (c == '{') {
+                if (depth == enclosing.length) {
+                    enclosing = Arrays.copyOf(enclosing, depth * 2);
+                }
+                enclosing[depth++] = declarations;
+                declarations = !atRule || isDeclarationAtRule();
+                statementStart = true;
+            } else if (c == '}') {
+                declarations = depth > 0 && enclosing[--depth];
+                statementStart = true;
+            } else if (c == ';') {
+                statementStart = true;
+            }
+        }
+
+        /**
+         * At-rules such as <em>@font-face</em> and <em>@page</em> hold declarations, whereas grouping
+         * at-rules such as <em>@media</em>, <em>@supports</em> and <em>@keyframes</em> hold rules.
+         */
+        private boolean isDeclarationAtRule() {
+            final String name = new String(atRuleName, 0, atRuleNameLength);
+            return "font-face".equals(name) || "page".equals(name) || "counter-style".equals(name)
+                    || "property".equals(name) || "viewport".equals(name) || "font-palette-values".equals(name);
+        }
+
+        private void skipComment() throws IOException {
+            int previous = -1;
+            int c;
+            while ((c = read()) != -1) {
+                if (previous == '*' && c == '/') {
+                    return;
+                }
+                previous = c;
+            }
+        }
+
+        private void copyString(final int quote) throws IOException {
+            int c;
+            while ((c = read()) != -1) {
+                write(c);
+                if (c == '\\') {
+                    c = read();
+                    if (c == -1) {
+                        return;
+                    }
+                    write(c);
+                } else if (c == quote) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Copy an unquoted <em>url()</em> value, dropping the whitespace around it. Quoted values are
+         * left to the main loop, which copies them as strings.
+         */
+        private void copyUrl() throws IOException {
+            int c = read();
+            while (isWhitespace(c)) {
+                c = read();
+            }
+            if (c == '"' || c == '\'' || c == -1) {
+                unread(c);
+                return;
+            }
+            for (; c != -1; c = read()) {
+                if (c == ')') {
+                    write(c);
+                    return;
+                }
+                if (isWhitespace(c)) {
+                    continue;
+                }
+                write(c);
+                if (c == '\\') {
+                    c = read();
+                    if (c == -1) {
+                        return;
+                    }
+                    write(c);
+                }
+            }
+        }
+
+        private boolean isUrl() {
+            return (last == 'l' || last == 'L') && (secondLast == 'r' || secondLast == 'R') && (thirdLast == 'u' || thirdLast == 'U');
+        }
+
+        private int read() throws IOException {
+            if (pushedBack != -1) {
+                final int c = pushedBack;
+                pushedBack = -1;
+                return c;
+            }
+            if (position == limit) {
+                limit = in.read(input, 0, input.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return input[position++];
+        }
 
-        // Remove all whitespace
-        input = input.replace(" ", "");
+        private void unread(final int c) {
+            pushedBack = c;
+        }
 
-        // Remove the last semi-colon in a CSS block.
-        return input.replace(";}", "}");
+        private void write(final int c) throws IOException {
+            if (length == output.length) {
+                out.write(output, 0, length);
+                length = 0;
+            }
+            output[length++] = (char) c;
+            thirdLast = secondLast;
+            secondLast = last;
+            last = c;
+        }
     }
 }
@@ -0,0 +1,428 @@
+package com.github.crmepham;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+
+/**
+ * <p>Removes duplicate rules and declarations from a <em>CSS</em> bundle, and merges adjacent rules
+ * with the same selector.</p>
+ *
+ * <p>
+ *     The bundle is parsed into a list of rules, at-rules and grouping at-rules such as <em>@media</em>, one
+ *     list for each file it was created from. Within each rule, a declaration that appears again later in the
+ *     same rule is removed. Within each list, a rule or <em>@media</em> block that appears again later, exactly,
+ *     is removed: the later copy applies the same declarations at a later point in the cascade, so the earlier
+ *     one has no effect. Rules with the same selector that are then next to each other are merged, which keeps
+ *     the order of every declaration. Statements such as <em>@import</em> and <em>@charset</em>, and comments,
+ *     are never moved or removed. Neither are at-rules whose position matters, such as <em>@layer</em>, whose
+ *     first block sets the order of the layer, and <em>@font-face</em> and <em>@keyframes</em>, where the last
+ *     of a name wins, although the rules inside an <em>@layer</em> are still optimized. Input that cannot be
+ *     parsed, for example because of unbalanced braces, is left as it is.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class CssOptimizer {
+
+    /**
+     * At-rules that hold rules, and so are optimized recursively. Other at-rules with blocks, such as
+     * <em>@font-face</em> and <em>@keyframes</em>, are kept as they are.
+     */
+    private static final Set<String> GROUPING_AT_RULES = new HashSet<>(Arrays.asList(
+            "media", "supports", "document", "-moz-document", "layer", "container", "scope"));
+
+    /**
+     * Grouping at-rules whose position matters, which are never removed as duplicates.
+     */
+    private static final Set<String> ORDERED_AT_RULES = Collections.singleton("layer");
+
+    private CssOptimizer() {
+    }
+
+    /**
+     * Optimize a bundle made up of the given minified files.
+     * @param files The contents of every file in the bundle, in bundle order.
+     * @return The optimized contents attributed to every file, in bundle order, or null if the bundle
+     *         could not be parsed.
+     */
+    static List<String> optimize(final List<String> files) {
+        final List<Node> nodes = new ArrayList<>();
+        for (int i = 0, j = files.size(); i < j; i++) {
+            final Parser parser = new Parser(files.get(i), i);
+            try {
+                nodes.addAll(parser.parseList(false));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        final StringBuilder[] outputs = new StringBuilder[files.size()];
+        for (int i = 0; i < outputs.length; i++) {
+            outputs[i] = new StringBuilder();
+        }
+        for (Node node : optimizeNodes(nodes)) {
+            node.write(outputs[node.origin]);
+        }
+
+        final List<String> result = new ArrayList<>(outputs.length);
+        for (StringBuilder output : outputs) {
+            result.add(output.toString());
+        }
+        return result;
+    }
+
+    private static List<Node> optimizeNodes(final List<Node> nodes) {
+        for (Node node : nodes) {
+            if (node instanceof Group) {
+                final Group group = (Group) node;
+                group.children = optimizeNodes(group.children);
+            } else if (node instanceof Rule) {
+                final Rule rule = (Rule) node;
+                rule.declarations = withoutDuplicates(rule.declarations);
+            }
+        }
+
+        // Keep the last copy of every duplicated node, along with every node that is never removed. Empty rules are dropped.
+        final List<Node> unique = new ArrayList<>(nodes.size());
+        final Set<String> seen = new HashSet<>();
+        for (ListIterator<Node> it = nodes.listIterator(nodes.size()); it.hasPrevious(); ) {
+            final Node node = it.previous();
+            final String key = node.key();
+            if ((node instanceof Rule && ((Rule) node).declarations.isEmpty()) || (node instanceof Group && key != null && ((Group) node).children.isEmpty())) {
+                continue;
+            }
+            if (key == null || seen.add(key)) {
+                unique.add(node);
+            }
+        }
+
+        final List<Node> result = new ArrayList<>(unique.size());
+        for (ListIterator<Node> it = unique.listIterator(unique.size()); it.hasPrevious(); ) {
+            final Node node = it.previous();
+            final Node last = result.isEmpty() ? null : result.get(result.size() - 1);
+            if (node instanceof Rule && last instanceof Rule && ((Rule) last).selector.equals(((Rule) node).selector)) {
+                final Rule merged = (Rule) last;
+                merged.declarations.addAll(((Rule) node).declarations);
+                merged.declarations = withoutDuplicates(merged.declarations);
+                continue;
+            }
+            result.add(node);
+        }
+        return result;
+    }
+
+    /**
+     * Remove every declaration that appears again later, keeping the order of the last copies.
+     */
+    private static List<String> withoutDuplicates(final List<String> declarations) {
+        final Set<String> last = new LinkedHashSet<>();
+        for (ListIterator<String> it = declarations.listIterator(declarations.size()); it.hasPrevious(); ) {
+            last.add(it.previous());
+        }
+        final List<String> result = new ArrayList<>(last);
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * A node of the rule model, and the index of the file it came from.
+     */
+    private abstract static class Node {
+
+        final int origin;
+
+        Node(final int origin) {
+            this.origin = origin;
+        }
+
+        abstract void write(StringBuilder out);
+
+        /**
+         * Get the text that identifies duplicates of this node.
+         * @return The text, or null if this node is never removed.
+         */
+        String key() {
+            final StringBuilder out = new StringBuilder();
+            write(out);
+            return out.toString();
+        }
+    }
+
+    /**
+     * Text that is kept where it is, such as a statement or a comment.
+     */
+    private static final class Raw extends Node {
+
+        private final String text;
+
+        Raw(final String text, final int origin) {
+            super(origin);
+            this.text = text;
+        }
+
+        @Override
+        void write(final StringBuilder out) {
+            out.append(text);
+        }
+
+        @Override
+        String key() {
+            return null;
+        }
+    }
+
+    /**
+     * An at-rule with a block, such as <em>@font-face</em>, or a rule with nested blocks, which is kept as
+     * it is. Only the rules are removed when exactly duplicated.
+     */
+    private static final class Opaque extends Node {
+
+        private final String text;
+
+        Opaque(final String text, final int origin) {
+            super(origin);
+            this.text = text;
+        }
+
+        @Override
+        void write(final StringBuilder out) {
+            out.append(text);
+        }
+
+        @Override
+        String key() {
+            return text.startsWith("@") ? null : text;
+        }
+    }
+
+    /**
+     * A style rule and its declarations.
+     */
+    private static final class Rule extends Node {
+
+        private final String selector;
+        private List<String> declarations;
+
+        Rule(final String selector, final List<String> declarations, final int origin) {
+            super(origin);
+            this.selector = selector;
+            this.declarations = declarations;
+        }
+
+        @Override
+        void write(final StringBuilder out) {
+            out.append(selector).append('{');
+            for (int i = 0, j = declarations.size(); i < j; i++) {
+                if (i > 0) {
+                    out.append(';');
+                }
+                out.append(declarations.get(i));
+            }
+            out.append('}');
+        }
+    }
+
+    /**
+     * A grouping at-rule, such as <em>@media</em>, and the rules it holds.
+     */
+    private static final class Group extends Node {
+
+        private final String prelude;
+        private List<Node> children;
+
+        Group(final String prelude, final List<Node> children, final int origin) {
+            super(origin);
+            this.prelude = prelude;
+            this.children = children;
+        }
+
+        @Override
+        void write(final StringBuilder out) {
+            out.append(prelude).append('{');
+            for (Node child : children) {
+                child.write(out);
+            }
+            out.append('}');
+        }
+
+        @Override
+        String key() {
+            return ORDERED_AT_RULES.contains(Parser.atRuleName(prelude)) ? null : super.key();
+        }
+    }
+
+    /**
+     * Parses the contents of a single file into nodes. Strings, comments and escaped characters are
+     * skipped over wherever braces, semi-colons and parentheses are looked for.
+     */
+    private static final class Parser {
+
+        private final String css;
+        private final int origin;
+        private int position;
+
+        Parser(final String css, final int origin) {
+            this.css = css;
+            this.origin = origin;
+        }
+
+        List<Node> parseList(final boolean nested) {
+            final List<Node> nodes = new ArrayList<>();
+            while (true) {
+                skipWhitespace();
+                if (position >= css.length()) {
+                    if (nested) {
+                        throw new IllegalArgumentException("Unclosed block");
+                    }
+                    return nodes;
+                }
+                if (css.startsWith("/*", position)) {
+                    final int start = position;
+                    skipComment();
+                    nodes.add(new Raw(css.substring(start, position), origin));
+                    continue;
+                }
+                if (css.charAt(position) == '}') {
+                    if (!nested) {
+                        throw new IllegalArgumentException("Unexpected '}'");
+                    }
+                    position++;
+                    return nodes;
+                }
+
+                final int start = position;
+                scanTo("{;}");
+                final String prelude = css.substring(start, position).trim();
+                if (position >= css.length() || css.charAt(position) == '}') {
+                    nodes.add(new Raw(prelude, origin));
+                    continue;
+                }
+                if (css.charAt(position) == ';') {
+                    position++;
+                    nodes.add(new Raw(prelude + ";", origin));
+                    continue;
+                }
+
+                position++;
+                if (prelude.startsWith("@") && GROUPING_AT_RULES.contains(atRuleName(prelude))) {
+                    nodes.add(new Group(prelude, parseList(true), origin));
+                    continue;
+                }
+                final int body = position;
+                final boolean nestedBlocks = skipBlock();
+                final String contents = css.substring(body, position - 1);
+                if (prelude.startsWith("@") || nestedBlocks) {
+                    nodes.add(new Opaque(prelude + "{" + contents + "}", origin));
+                } else {
+                    nodes.add(new Rule(prelude, declarations(contents), origin));
+                }
+            }
+        }
+
+        /**
+         * Skip to the end of the current block, including its closing brace.
+         * @return True if the block holds nested blocks.
+         */
+        private boolean skipBlock() {
+            boolean nested = false;
+            int depth = 1;
+            while (depth > 0) {
+                scanTo("{}");
+                if (position >= css.length()) {
+                    throw new IllegalArgumentException("Unclosed block");
+                }
+                if (css.charAt(position++) == '{') {
+                    nested = true;
+                    depth++;
+                } else {
+                    depth--;
+                }
+            }
+            return nested;
+        }
+
+        /**
+         * Advance to the next of the given characters outside any string, comment or parentheses.
+         */
+        private void scanTo(final String stops) {
+            int parentheses = 0;
+            while (position < css.length()) {
+                final char c = css.charAt(position);
+                if (c == '\\') {
+                    position += 2;
+                } else if (c == '"' || c == '\'') {
+                    skipString(c);
+                } else if (c == '/' && css.startsWith("/*", position)) {
+                    skipComment();
+                } else if (c == '(') {
+                    parentheses++;
+                    position++;
+                } else if (c == ')') {
+                    parentheses = Math.max(0, parentheses - 1);
+                    position++;
+                } else if (parentheses == 0 && stops.indexOf(c) >= 0) {
+                    return;
+                } else {
+                    position++;
+                }
+            }
+            position = css.length();
+        }
+
+        private List<String> declarations(final String contents) {
+            final Parser parser = new Parser(contents, origin);
+            final List<String> declarations = new ArrayList<>();
+            while (parser.position < contents.length()) {
+                final int start = parser.position;
+                parser.scanTo(";");
+                final String declaration = contents.substring(start, parser.position).trim();
+                if (!declaration.isEmpty()) {
+                    declarations.add(declaration);
+                }
+                parser.position++;
+            }
+            return declarations;
+        }
+
+        private void skipString(final char quote) {
+            position++;
+            while (position < css.length()) {
+                final char c = css.charAt(position++);
+                if (c == '\\') {
+                    position++;
+                } else if (c == quote) {
+                    return;
+                }
+            }
+            throw new IllegalArgumentException("Unclosed string");
+        }
+
+        private void skipComment() {
+            final int end = css.indexOf("*/", position + 2);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unclosed comment");
+            }
+            position = end + 2;
+        }
+
+        private void skipWhitespace() {
+            while (position < css.length() && Character.isWhitespace(css.charAt(position))) {
+                position++;
+            }
+        }
+
+        private static String atRuleName(final String prelude) {
+            int end = 1;
+            while (end < prelude.length() && (Character.isLetterOrDigit(prelude.charAt(end)) || prelude.charAt(end) == '-')) {
+                end++;
+            }
+            return prelude.substring(1, end).toLowerCase();
+        }
+    }
+}
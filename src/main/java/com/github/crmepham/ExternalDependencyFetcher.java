@@ -1,11 +1,16 @@
 package com.github.crmepham;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-
-import org.apache.commons.io.IOUtils;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
 
 /**
  * Attempts to fetch the contents of an external.
@@ -13,19 +18,57 @@ import org.apache.commons.io.IOUtils;
 public final class ExternalDependencyFetcher {
 
     /**
-     * Attempt to get the contents of an external dependency.
+     * Attempt to get the contents of an external dependency. The response body is streamed, rather
+     * than read into memory, and the connection is released once the reader is closed.
+     * @param uri The fully qualified URI where the document resides.
+     * @return A reader over the contents of the URI. The caller must close it.
+     * @throws IOException If something went wrong.
+     */
+    public static Reader fetch(String uri) throws IOException {
+        final HttpURLConnection con = connect(uri);
+        return new InputStreamReader(con.getInputStream(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Download the contents of an external dependency to the given file. The response body is streamed
+     * to a temporary file which then atomically replaces the target file.
+     * @param uri The fully qualified URI where the document resides.
+     * @param file The file to download the contents to.
+     * @throws IOException If something went wrong.
+     */
+    static void download(String uri, File file) throws IOException {
+        final HttpURLConnection con = connect(uri);
+        try {
+            final int status = con.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException(String.format("Unexpected response status %s from: %s", status, uri));
+            }
+            final Path temp = file.toPath().resolveSibling(file.getName() + "." + UUID.randomUUID() + ".tmp");
+            try (InputStream in = con.getInputStream()) {
+                Files.copy(in, temp);
+                AtomicFiles.move(temp, file.toPath());
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } finally {
+            con.disconnect();
+        }
+    }
+
+    /**
+     * Open a <em>GET</em> connection to an external dependency. The request is not sent until the
+     * response is first accessed, so request headers can still be added to the returned connection.
      * @param uri The fully qualified URI where the document resides.
-     * @return The contents of the URI as a String.
+     * @return The connection.
      * @throws IOException If something went wrong.
      */
-    public static String fetch(String uri) throws IOException {
+    static HttpURLConnection connect(String uri) throws IOException {
         final URL url = new URL(uri);
         final HttpURLConnection con = (HttpURLConnection) url.openConnection();
         con.setRequestMethod("GET");
         con.setConnectTimeout(5000);
         con.setReadTimeout(5000);
         con.setInstanceFollowRedirects(false);
-        con.disconnect();
-        return IOUtils.toString(con.getInputStream(), StandardCharsets.UTF_8.name());
+        return con;
     }
 }
@@ -1,11 +1,51 @@
 package com.github.crmepham;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
- * The file extension. Currently on  <em>Javascript</em> and <em>CSS</em> are supported.
+ * The file extension of the files in a bundle. <em>Javascript</em> and <em>CSS</em> are bundled by default, and
+ * other extensions are added by choosing a {@link MinifierEngine} for them. There is only ever one instance for
+ * each extension, so extensions can be compared with <em>==</em>.
  *
  * @author Chris Mepham
  */
-public enum FileExtension {
-    js,
-    css
+public final class FileExtension {
+
+    private static final ConcurrentMap<String, FileExtension> EXTENSIONS = new ConcurrentHashMap<>();
+
+    public static final FileExtension js = of("js");
+
+    public static final FileExtension css = of("css");
+
+    private final String name;
+
+    private FileExtension(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the file extension with the given name.
+     * @param name The extension, without the dot, such as <em>js</em>.
+     * @return The file extension.
+     * @throws IllegalArgumentException If the name is not made up of letters and digits only.
+     */
+    public static FileExtension of(final String name) {
+        if (name == null || name.isEmpty() || !name.chars().allMatch(Character::isLetterOrDigit)) {
+            throw new IllegalArgumentException("Invalid file extension: " + name);
+        }
+        return EXTENSIONS.computeIfAbsent(name, FileExtension::new);
+    }
+
+    /**
+     * @return The extension, without the dot.
+     */
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
 }
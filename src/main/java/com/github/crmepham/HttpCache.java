@@ -0,0 +1,265 @@
+package com.github.crmepham;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * <p>An on-disk cache of the external dependencies listed in the dependencies file.</p>
+ *
+ * <p>
+ *     For every URI the cache stores the response body along with its <em>ETag</em> and
+ *     <em>Last-Modified</em> headers. Later builds revalidate the cached body with a conditional
+ *     request and reuse it when the server responds with <em>304 Not Modified</em>. In offline mode
+ *     no requests are made at all and every URI must already be cached.
+ * </p>
+ *
+ * <p>
+ *     Bodies are stored under their content hash and the metadata for a URI refers to the body by
+ *     that hash. Both are written to a temporary file and atomically moved into place, body first,
+ *     so a reader always sees a complete body that matches the metadata.
+ * </p>
+ *
+ * <p>
+ *     Every use of a body marks it as recently used. When the bodies grow beyond the maximum size the
+ *     least recently used ones are evicted, along with the metadata that refers to them, but never the
+ *     body that was just fetched.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class HttpCache {
+
+    private static final Gson GSON = new Gson();
+
+    private static final String BODY = ".body";
+
+    private static final String METADATA = ".json";
+
+    /**
+     * The caches opened by every execution of the plugin in this JVM, by directory and maximum size.
+     */
+    private static final ConcurrentMap<String, HttpCache> OPEN = new ConcurrentHashMap<>();
+
+    private final File directory;
+    private final long maxSize;
+    private long size = -1;
+
+    HttpCache(final File directory, final long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the cache kept in the given directory. Executions of the plugin that run concurrently in the same
+     * JVM share a single cache for each directory, so that its size is tracked in one place.
+     * @param directory The cache directory.
+     * @param maxSize The maximum size of the cached bodies in bytes.
+     * @return The cache.
+     */
+    static HttpCache open(final File directory, final long maxSize) {
+        final File absolute = directory.getAbsoluteFile();
+        return OPEN.computeIfAbsent(absolute.toPath().normalize() + "\0" + maxSize, k -> new HttpCache(absolute, maxSize));
+    }
+
+    /**
+     * Get the body of the given URI, revalidating or fetching it as required.
+     * @param uri The fully qualified URI where the document resides.
+     * @param offline If true, the body is only ever served from the cache.
+     * @return The cached body file. It must not be modified.
+     * @throws IOException If the body could not be fetched, or in offline mode, is not cached.
+     */
+    File fetch(final String uri, final boolean offline) throws IOException {
+        final Path metadataPath = directory.toPath().resolve(ContentHash.toHex(ContentHash.newDigest().digest(uri.getBytes(UTF_8))) + METADATA);
+        final Metadata cached = read(metadataPath);
+        if (offline) {
+            if (cached == null) {
+                throw new IOException("Offline mode is enabled and the dependency has not been cached: " + uri);
+            }
+            return used(cached.body);
+        }
+
+        final HttpURLConnection con = ExternalDependencyFetcher.connect(uri);
+        try {
+            if (cached != null) {
+                if (cached.etag != null) {
+                    con.setRequestProperty("If-None-Match", cached.etag);
+                }
+                if (cached.lastModified != null) {
+                    con.setRequestProperty("If-Modified-Since", cached.lastModified);
+                }
+            }
+
+            final int status = con.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                return used(cached.body);
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException(String.format("Unexpected response status %s from: %s", status, uri));
+            }
+
+            final Metadata metadata = new Metadata();
+            metadata.uri = uri;
+            metadata.etag = con.getHeaderField("ETag");
+            metadata.lastModified = con.getHeaderField("Last-Modified");
+            try (InputStream in = con.getInputStream()) {
+                metadata.body = write(in);
+            }
+            final Path temp = temp();
+            Files.write(temp, GSON.toJson(metadata).getBytes(UTF_8));
+            AtomicFiles.move(temp, metadataPath);
+
+            added(metadata.body);
+            return body(metadata.body).toFile();
+        } finally {
+            con.disconnect();
+        }
+    }
+
+    /**
+     * Read the metadata for a URI. Missing or unreadable metadata, or metadata whose body has gone
+     * missing, is treated as not cached.
+     */
+    private Metadata read(final Path path) {
+        try {
+            final Metadata metadata = GSON.fromJson(new String(Files.readAllBytes(path), UTF_8), Metadata.class);
+            if (metadata == null || metadata.body == null || !Files.isRegularFile(body(metadata.body))) {
+                return null;
+            }
+            return metadata;
+        } catch (IOException | JsonParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stream the body into the cache, under its content hash.
+     * @return The content hash of the body.
+     */
+    private String write(final InputStream in) throws IOException {
+        final Path temp = temp();
+        final MessageDigest digest = ContentHash.newDigest();
+        try {
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                final byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+            }
+            final String hash = ContentHash.toHex(digest.digest());
+            AtomicFiles.move(temp, body(hash));
+            return hash;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path body(final String hash) {
+        return directory.toPath().resolve(hash + BODY);
+    }
+
+    /**
+     * Mark a cached body as recently used.
+     */
+    private File used(final String hash) {
+        final File body = body(hash).toFile();
+        body.setLastModified(System.currentTimeMillis());
+        return body;
+    }
+
+    /**
+     * Record that a body was added, evicting the least recently used bodies, other than the one added, if
+     * the cache has grown beyond its maximum size. Bodies may be shared with, and deleted or used by, other
+     * builds, so the size is measured again before evicting.
+     */
+    private synchronized void added(final String hash) {
+        final File added = used(hash);
+        size = size < 0 ? measure() : size + added.length();
+        if (size <= maxSize) {
+            return;
+        }
+
+        final List<File> bodies = new ArrayList<>(Arrays.asList(bodies()));
+        final Map<File, Long> times = new HashMap<>();
+        for (File body : bodies) {
+            times.put(body, body.lastModified());
+        }
+        bodies.sort(Comparator.comparing(times::get));
+        size = measure();
+        boolean evicted = false;
+        for (int i = 0; size > maxSize && i < bodies.size(); i++) {
+            final File body = bodies.get(i);
+            final long length = body.length();
+            if (!body.equals(added) && body.delete()) {
+                size -= length;
+                evicted = true;
+            }
+        }
+        if (evicted) {
+            deleteOrphanedMetadata();
+        }
+    }
+
+    private File[] bodies() {
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(BODY));
+        return files == null ? new File[0] : files;
+    }
+
+    private long measure() {
+        long total = 0;
+        for (File body : bodies()) {
+            total += body.length();
+        }
+        return total;
+    }
+
+    /**
+     * Delete the metadata of every URI whose body has been evicted.
+     */
+    private void deleteOrphanedMetadata() {
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(METADATA));
+        if (files != null) {
+            for (File file : files) {
+                if (read(file.toPath()) == null) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private Path temp() throws IOException {
+        Files.createDirectories(directory.toPath());
+        return directory.toPath().resolve(UUID.randomUUID() + ".tmp");
+    }
+
+    /**
+     * The cached response headers of a single URI, and the content hash of its body.
+     */
+    static final class Metadata {
+        String uri;
+        String etag;
+        String lastModified;
+        String body;
+    }
+}
@@ -1,8 +1,10 @@
 package com.github.crmepham;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 
 import org.apache.maven.plugin.logging.Log;
 import org.sonatype.plexus.build.incremental.BuildContext;
@@ -29,12 +31,35 @@ import net_alchim31_maven_yuicompressor.ErrorReporter4Mojo;
  */
 class JavascriptMinifier extends Minifier {
 
-    private Log log;
-    private BuildContext context;
+    private final int lineBreak;
+    private final boolean munge;
+    private final boolean preserveSemicolons;
+    private final boolean disableOptimizations;
+
+    /**
+     * The YUICompressor parses its input as soon as it is constructed, so a compressor cannot be reused
+     * across files. Everything else is created once per thread and shared by every file that thread minifies.
+     */
+    private final ThreadLocal<ErrorReporter4Mojo> errorReporter;
 
     JavascriptMinifier(Log log, BuildContext context) {
-        this.log = log;
-        this.context = context;
+        this(log, context, 1, false, false, false);
+    }
+
+    /**
+     * @param log The log to report Javascript errors and warnings to.
+     * @param context The build context to report Javascript errors and warnings to.
+     * @param lineBreak The column after which a line break is inserted, or -1 for no line breaks.
+     * @param munge If true, local symbols are renamed to shorter names.
+     * @param preserveSemicolons If true, every semi-colon is kept.
+     * @param disableOptimizations If true, micro optimizations such as merging string literals are disabled.
+     */
+    JavascriptMinifier(Log log, BuildContext context, int lineBreak, boolean munge, boolean preserveSemicolons, boolean disableOptimizations) {
+        this.lineBreak = lineBreak;
+        this.munge = munge;
+        this.preserveSemicolons = preserveSemicolons;
+        this.disableOptimizations = disableOptimizations;
+        this.errorReporter = ThreadLocal.withInitial(() -> new ErrorReporter4Mojo(log, false, context));
     }
 
     /**
@@ -44,10 +69,26 @@ class JavascriptMinifier extends Minifier {
      * @return The minified file contents.
      */
     String minify(String input) throws IOException {
-        final ErrorReporter4Mojo errorReporter = new ErrorReporter4Mojo(log, false, context);
-        final JavaScriptCompressor compressor = new JavaScriptCompressor(new StringReader(input), errorReporter);
         final StringWriter writer = new StringWriter();
-        compressor.compress(writer, 1, false, false, false, false);
+        minify(new StringReader(input), writer);
         return writer.toString();
     }
+
+    /**
+     * Minifies the given Javascript using the YUICompressor library, writing the result to the writer.
+     * This is safe to call from several threads at once.
+     *
+     * @param in The file contents.
+     * @param out Where to write the minified file contents.
+     */
+    @Override
+    public void minify(Reader in, Writer out) throws IOException {
+        final JavaScriptCompressor compressor = new JavaScriptCompressor(in, errorReporter.get());
+        compressor.compress(out, lineBreak, munge, false, preserveSemicolons, disableOptimizations);
+    }
+
+    @Override
+    public String getCacheKey() {
+        return super.getCacheKey() + ":" + lineBreak + ":" + munge + ":" + preserveSemicolons + ":" + disableOptimizations;
+    }
 }
@@ -1,25 +1,50 @@
 package com.github.crmepham;
 
 import static com.github.crmepham.FileExtension.css;
-import static com.github.crmepham.FileExtension.js;
 import static java.lang.String.format;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.sonatype.plexus.build.incremental.ThreadBuildContext.getContext;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.sonatype.plexus.build.incremental.BuildContext;
 
 import com.google.gson.Gson;
 
@@ -51,7 +76,7 @@ import com.google.gson.Gson;
  *
  * @author Christopher Mepham
  */
-@Mojo(name = "bundle", defaultPhase = LifecyclePhase.PACKAGE)
+@Mojo(name = "bundle", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true)
 public class Main extends AbstractMojo {
 
     /**
@@ -94,12 +119,386 @@ public class Main extends AbstractMojo {
     @Parameter(defaultValue = "classes/static", readonly = true)
     private String toPath;
 
+    /**
+     * If true, bundles are written straight into the target directory, rather than into the source directory
+     * and then copied. The bundled files are excluded from the project resources instead of being deleted from
+     * the target directory once copied, which requires the plugin to run before the resources are copied, for
+     * example in the <em>generate-resources</em> phase.
+     */
+    @Parameter(defaultValue = "false", readonly = true)
+    private boolean writeToBuildDirectory;
+
+    /**
+     * The project resources, which the bundled files are excluded from when <em>writeToBuildDirectory</em> is true.
+     */
+    @Parameter(defaultValue = "${project.resources}", readonly = true)
+    private List<Resource> resources;
+
     /**
      * A comma-separated list of of top-level directories to exclude from bundling.
      */
     @Parameter(readonly = true)
     private String excludedDirectories;
 
+    /**
+     * A comma-separated list of glob patterns, such as <em>app/**&#47;*.js</em>, matched against the path of
+     * every file relative to the <em>fromPath</em> directory. If given, only matching files are bundled.
+     */
+    @Parameter(readonly = true)
+    private String includes;
+
+    /**
+     * A comma-separated list of glob patterns, such as <em>**&#47;vendor</em> or <em>**&#47;*.test.js</em>,
+     * matched against the path of every file and directory relative to the <em>fromPath</em> directory.
+     * Matching files, and everything beneath matching directories, are not bundled.
+     */
+    @Parameter(readonly = true)
+    private String excludes;
+
+    /**
+     * If true, every top-level directory and file extension combination is bundled concurrently.
+     */
+    @Parameter(defaultValue = "false", readonly = true)
+    private boolean parallel;
+
+    /**
+     * The number of worker threads to use when bundling in parallel. By default this is the
+     * number of available processors.
+     */
+    @Parameter(defaultValue = "0", readonly = true)
+    private int threads;
+
+    /**
+     * If true, bundles whose input files are unchanged since the previous build are not created again.
+     * The inputs and output of every bundle are recorded in <em>resource-bundler/manifest.json</em>
+     * under the build directory.
+     */
+    @Parameter(defaultValue = "true", readonly = true)
+    private boolean incremental;
+
+    /**
+     * If true, the minified contents of every file are cached on disk, keyed by the hash of the file
+     * contents and the minifier options, so that unchanged files are not minified again.
+     */
+    @Parameter(defaultValue = "true", readonly = true)
+    private boolean cacheMinification;
+
+    /**
+     * The directory to keep the minification cache in. This can be shared between projects and builds.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/resource-bundler/minified", readonly = true)
+    private String minificationCacheDirectory;
+
+    /**
+     * The maximum size of the minification cache in bytes. The least recently used entries are
+     * evicted once this is exceeded.
+     */
+    @Parameter(defaultValue = "104857600", readonly = true)
+    private long minificationCacheMaxSize;
+
+    /**
+     * A directory to share finished bundles through, between the modules of a build and between builds on
+     * different machines, such as a mounted directory on CI agents. Bundles are keyed by the contents of their
+     * files, the plugin version and the minifier settings, and are restored from the directory instead of
+     * being created again. By default no bundles are shared.
+     */
+    @Parameter(readonly = true)
+    private String sharedCacheDirectory;
+
+    /**
+     * The version of this plugin, which is part of the key of every bundle in the shared cache.
+     */
+    @Parameter(defaultValue = "${plugin.version}", readonly = true)
+    private String pluginVersion;
+
+    /**
+     * If true, external dependencies are cached on disk together with their <em>ETag</em> and
+     * <em>Last-Modified</em> headers, and later builds revalidate them with conditional requests.
+     */
+    @Parameter(defaultValue = "true", readonly = true)
+    private boolean cacheExternalDependencies;
+
+    /**
+     * The directory to cache external dependencies in. This can be shared between projects and builds.
+     */
+    @Parameter(defaultValue = "${user.home}/.resource-bundler/http-cache", readonly = true)
+    private String externalDependenciesCacheDirectory;
+
+    /**
+     * The maximum size in bytes of the external dependencies cache, after which the least recently used
+     * dependencies are evicted.
+     */
+    @Parameter(defaultValue = "104857600", readonly = true)
+    private long externalDependenciesCacheMaxSize;
+
+    /**
+     * If true, external dependencies are only ever served from the cache and no requests are made.
+     * By default this follows the Maven offline setting.
+     */
+    @Parameter(defaultValue = "${settings.offline}", readonly = true)
+    private boolean offline;
+
+    /**
+     * The maximum number of external dependencies to fetch concurrently.
+     */
+    @Parameter(defaultValue = "8", readonly = true)
+    private int fetchThreads;
+
+    /**
+     * The maximum number of external dependencies to fetch concurrently from any single host.
+     */
+    @Parameter(defaultValue = "4", readonly = true)
+    private int fetchThreadsPerHost;
+
+    /**
+     * The time budget, in seconds, for fetching every external dependency.
+     */
+    @Parameter(defaultValue = "300", readonly = true)
+    private int fetchTimeout;
+
+    /**
+     * If true, the time taken and the bytes read and written for every file, bundle and external dependency
+     * are written to <em>resource-bundler/report.json</em> under the build directory and summarised in the log.
+     */
+    @Parameter(defaultValue = "true", readonly = true)
+    private boolean performanceReport;
+
+    private final BuildReport report = new BuildReport();
+
+    /**
+     * The column after which the Javascript minifier inserts a line break, or -1 for no line breaks.
+     */
+    @Parameter(defaultValue = "1", readonly = true)
+    private int jsLineBreak;
+
+    /**
+     * If true, the Javascript minifier renames local symbols to shorter names.
+     */
+    @Parameter(defaultValue = "false", readonly = true)
+    private boolean jsMunge;
+
+    /**
+     * If true, the Javascript minifier keeps every semi-colon.
+     */
+    @Parameter(defaultValue = "false", readonly = true)
+    private boolean jsPreserveSemicolons;
+
+    /**
+     * If true, the Javascript minifier does not apply micro optimizations such as merging string literals.
+     */
+    @Parameter(defaultValue = "false", readonly = true)
+    private boolean jsDisableOptimizations;
+
+    /**
+     * A comma-separated list of <em>extension=engine</em> pairs, such as <em>js=my-engine</em>, choosing the
+     * {@link MinifierEngine} that minifies the files with each extension. These are added to the defaults of
+     * <em>js=yui</em> and <em>css=builtin</em>, and any other extension, such as <em>mjs=none</em>, is bundled
+     * in the same way as <em>Javascript</em> and <em>CSS</em> files.
+     */
+    @Parameter(readonly = true)
+    private String minifiers;
+
+    /**
+     * A comma-separated list of <em>key=value</em> pairs that are passed on to the minifier engines, along with
+     * the <em>js</em> options above.
+     */
+    @Parameter(readonly = true)
+    private String minifierOptions;
+
+    /**
+     * If true, a gzip compressed copy of every bundle is written next to it in the target directory, with
+     * a <em>.gz</em> extension, so that web servers can serve it without compressing it on every request.
+     */
+    @Parameter(defaultValue = "false", readonly = true)
+    private boolean gzip;
+
+    /**
+     * The gzip compression level, from 1 (fastest) to 9 (smallest).
+     */
+    @Parameter(defaultValue = "9", readonly = true)
+    private int gzipLevel;
+
+    /**
+     * If true, the first characters of the content hash of every bundle are added to its file name in the
+     * target directory, such as <em>app-bundle.3f9a1c2b.js</em>, so that it can be cached indefinitely. The
+     * logical names are mapped to the hashed names in the asset manifest, and the hashed files of previous
+     * builds are deleted.
+     */
+    @Parameter(defaultValue = "false", readonly = true)
+    private boolean hashFileNames;
+
+    /**
+     * The name of the asset manifest written to the target directory when <em>hashFileNames</em> or
+     * <em>commonChunk</em> is true, or <em>maxChunkSize</em> is set.
+     */
+    @Parameter(defaultValue = "asset-manifest.json", readonly = true)
+    private String assetManifestFileName;
+
+    /**
+     * If true, duplicate rules and declarations are removed from every <em>CSS</em> bundle, and adjacent rules
+     * with the same selector are merged, wherever that does not change the cascade.
+     */
+    @Parameter(defaultValue = "false", readonly = true)
+    private boolean optimizeCss;
+
+    /**
+     * If true, the files imported by every <em>CSS</em> file with <em>@import</em> are bundled in its place, in
+     * cascade order and only once, so that browsers do not have to fetch them one after another.
+     */
+    @Parameter(defaultValue = "false", readonly = true)
+    private boolean inlineCssImports;
+
+    /**
+     * If true, the images and fonts referenced by <em>CSS</em> files with <em>url()</em> are inlined as data URIs
+     * when they are no larger than <em>inlineCssAssetMaxSize</em>, and the relative URLs of the others are
+     * rewritten so that they resolve from the bundle.
+     */
+    @Parameter(defaultValue = "false", readonly = true)
+    private boolean inlineCssAssets;
+
+    /**
+     * The maximum size, in bytes, of an image or font to inline as a data URI.
+     */
+    @Parameter(defaultValue = "4096", readonly = true)
+    private long inlineCssAssetMaxSize;
+
+    private CssAssetInliner cssAssetInliner;
+
+    /**
+     * If true, files with the same contents under more than one top-level directory, such as a copy of
+     * <em>jQuery</em>, are moved out of those bundles into a common bundle that every page can load first and
+     * cache. The bundles that depend on it are recorded in the asset manifest. A shared file is only moved if it
+     * leads every bundle that holds it, so that the order of the files, and so the <em>CSS</em> cascade, stays
+     * the same. Other shared files stay in their bundles.
+     */
+    @Parameter(defaultValue = "false", readonly = true)
+    private boolean commonChunk;
+
+    /**
+     * The name of the common bundle, such as <em>common</em> for <em>common-bundle.js</em>.
+     */
+    @Parameter(defaultValue = "common", readonly = true)
+    private String commonChunkName;
+
+    /**
+     * The content hash of every file with the same contents as a file in another bundle.
+     */
+    private Map<File, String> sharedInputs = Collections.emptyMap();
+
+    /**
+     * The minified contents of every shared file, by minifier and content hash.
+     */
+    private final Map<String, FutureTask<String>> sharedMinified = new ConcurrentHashMap<>();
+
+    /**
+     * The common bundle that each bundle depends on, by bundle file name.
+     */
+    private final Map<String, String> commonDependencies = new ConcurrentHashMap<>();
+
+    /**
+     * The maximum size, in bytes, of a bundle in the target directory, or 0 for no maximum. Larger bundles
+     * are split between files into ordered chunks, such as <em>app-bundle.0.js</em> and <em>app-bundle.1.js</em>,
+     * which pages can load in parallel. The chunks of every bundle are listed in the asset manifest.
+     */
+    @Parameter(defaultValue = "0", readonly = true)
+    private long maxChunkSize;
+
+    /**
+     * The maximum size, in bytes, of every bundle, or 0 for no maximum.
+     */
+    @Parameter(defaultValue = "0", readonly = true)
+    private long maxBundleSize;
+
+    /**
+     * The maximum size, in bytes, of every bundle after gzip compression, or 0 for no maximum.
+     */
+    @Parameter(defaultValue = "0", readonly = true)
+    private long maxBundleGzipSize;
+
+    /**
+     * The maximum size, in bytes, of every bundle together, or 0 for no maximum.
+     */
+    @Parameter(defaultValue = "0", readonly = true)
+    private long maxTotalSize;
+
+    /**
+     * The maximum size, in bytes, of every bundle together after gzip compression, or 0 for no maximum.
+     */
+    @Parameter(defaultValue = "0", readonly = true)
+    private long maxTotalGzipSize;
+
+    /**
+     * A comma-separated list of the budgets of individual bundles, which replace <em>maxBundleSize</em> and
+     * <em>maxBundleGzipSize</em> for them, such as <em>app-bundle.js=250000/60000</em>.
+     */
+    @Parameter(readonly = true)
+    private String bundleBudgets;
+
+    /**
+     * If true, the build fails when a bundle is over its size budget. Otherwise a warning is logged.
+     */
+    @Parameter(defaultValue = "true", readonly = true)
+    private boolean failOnBudgetExceeded;
+
+    private BundleBudgets budgets;
+
+    private AssetManifest assetManifest;
+
+    /**
+     * The content hash of every bundle file, computed while it was written.
+     */
+    private final Map<File, String> hashes = new ConcurrentHashMap<>();
+
+    /**
+     * The number of bytes each file takes up in every bundle file, in bundle order.
+     */
+    private final Map<File, long[]> segments = new ConcurrentHashMap<>();
+
+    /**
+     * The bundle files copied to the target directory during this build, with the content hash they were
+     * written with, or null where it is not known.
+     */
+    private final Map<File, String> outputs = new LinkedHashMap<>();
+
+    /**
+     * The files, or external dependency URI's, every bundle file was created from, in bundle order.
+     */
+    private final Map<File, List<String>> contributors = new LinkedHashMap<>();
+
+    /**
+     * The build context, injected by Maven so that every execution has its own rather than sharing a thread-bound one.
+     */
+    @Component
+    private BuildContext buildContext;
+
+    /**
+     * The minifier of every file extension, in the order their bundles are created.
+     */
+    private Map<FileExtension, StreamMinifier> extensionMinifiers;
+
+    /**
+     * The minifier of local <em>CSS</em> files, which removes the imports that were inlined, or null if
+     * imports are not inlined.
+     */
+
+    private MinificationCache minificationCache;
+
+    private HttpCache httpCache;
+
+    private BundleCache bundleCache;
+
+    private BundleManifest manifest;
+
+    /**
+     * The minified contents of every file, when kept in memory between bundling runs.
+     */
+    private Map<File, Minified> minified;
+
+    /**
+     * The external contents of every external bundle, when minified files are kept in memory.
+     */
+    private final Map<String, String> externalContents = new ConcurrentHashMap<>();
+
     public void execute() throws MojoExecutionException {
         final String fullPath = projectResourcesDirectory + File.separator + fromPath;
         final File directory = new File(fullPath);
@@ -107,286 +506,1665 @@ public class Main extends AbstractMojo {
             throw new MojoExecutionException("Directory does not exist: " + fullPath);
         }
 
-        if (!bundleLocal(directory)) {
-            getLog().error("Bundling failed. See above for details.");
-            return;
+        if (cacheMinification) {
+            minificationCache = MinificationCache.open(new File(minificationCacheDirectory), minificationCacheMaxSize);
+        }
+
+        if (sharedCacheDirectory != null && sharedCacheDirectory.length() > 0) {
+            bundleCache = new BundleCache(new File(sharedCacheDirectory));
+        }
+
+        if (inlineCssAssets) {
+            cssAssetInliner = new CssAssetInliner(directory, inlineCssAssetMaxSize, getLog());
+        }
+
+        if (cacheExternalDependencies) {
+            httpCache = HttpCache.open(new File(externalDependenciesCacheDirectory), externalDependenciesCacheMaxSize);
+        }
+
+        try {
+            budgets = new BundleBudgets(maxBundleSize, maxBundleGzipSize, maxTotalSize, maxTotalGzipSize,
+                    BundleBudgets.parse(bundleBudgets), gzipLevel);
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Invalid bundle budgets: " + e.getMessage(), e);
+        }
+
+        if (incremental) {
+            manifest = BundleManifest.load(new File(getWorkDirectory(), "manifest.json"));
+        }
+
+        if (writeToBuildDirectory) {
+            try {
+                FileUtils.forceMkdir(getBundleDirectory());
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to create destination directory: " + e.getMessage(), e);
+            }
+        }
+
+        if (hashFileNames || maxChunkSize > 0 || commonChunk) {
+            assetManifest = new AssetManifest(new File(projectBuildDirectory + File.separator + toPath, assetManifestFileName));
+        }
+
+        if (!bundleLocal(directory)) {
+            getLog().error("Bundling failed. See above for details.");
+            return;
+        }
+
+        if (bundleCache != null) {
+            report.sharedCache(bundleCache.getHits(), bundleCache.getMisses());
+            getLog().info(format("Shared bundle cache: %s hit(s), %s miss(es).", bundleCache.getHits(), bundleCache.getMisses()));
+        }
+
+        if (manifest != null) {
+            try {
+                manifest.save();
+            } catch (IOException e) {
+                getLog().warn("Failed to write bundle manifest: " + e.getMessage());
+            }
+        }
+
+        final File dependencies = new File(externalDependenciesFilePath);
+        if (!dependencies.exists()) {
+            getLog().info("Skipping bundling of external dependencies. No configuration file found at: " + externalDependenciesFilePath);
+        } else {
+            if (!bundleExternal(dependencies)) {
+                getLog().error("Bundling of external dependencies failed.");
+                return;
+            }
+        }
+
+        final List<String> exceeded = checkBudgets();
+
+        if (assetManifest != null) {
+            try {
+                writeAssetManifest();
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to write asset manifest: " + e.getMessage(), e);
+            }
+        } else if (assetManifestFileName != null) {
+            // An earlier build may have hashed or split the bundles, leaving files that are no longer used.
+            final Set<String> names = new HashSet<>();
+            for (File output : outputs.keySet()) {
+                names.add(output.getName());
+            }
+            AssetManifest.deleteEarlier(new File(projectBuildDirectory + File.separator + toPath, assetManifestFileName), names, getLog());
+        }
+
+        if (gzip && !outputs.isEmpty()) {
+            if (gzipLevel < 1 || gzipLevel > 9) {
+                throw new MojoExecutionException("Invalid gzip level, expected 1 to 9: " + gzipLevel);
+            }
+            try {
+                precompress(outputs);
+            } catch (IOException e) {
+                throw new MojoExecutionException(e.getMessage(), e);
+            }
+        }
+
+        if (performanceReport) {
+            final File file = new File(getWorkDirectory(), "report.json");
+            try {
+                report.write(file);
+            } catch (IOException e) {
+                getLog().warn("Failed to write performance report: " + e.getMessage());
+            }
+            report.summarize(getLog());
+            getLog().info("Performance report written to: " + file.getAbsolutePath());
+        }
+
+        if (!exceeded.isEmpty() && failOnBudgetExceeded) {
+            throw new MojoExecutionException(format("%s bundle size budget(s) exceeded. See above for details.", exceeded.size()));
+        }
+
+        getLog().info("Bundling completed successfully!");
+    }
+
+    /**
+     * Check the size of every bundle against its budget, once the external dependencies have been added to them,
+     * logging an error for every budget exceeded, or a warning when <em>failOnBudgetExceeded</em> is false.
+     * @return A message for every budget exceeded.
+     * @throws MojoExecutionException If a bundle could not be read.
+     */
+    private List<String> checkBudgets() throws MojoExecutionException {
+        if (budgets.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (gzipLevel < 1 || gzipLevel > 9) {
+            throw new MojoExecutionException("Invalid gzip level, expected 1 to 9: " + gzipLevel);
+        }
+
+        final List<String> exceeded;
+        try {
+            exceeded = budgets.check(contributors, segments, report);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to check bundle size budgets: " + e.getMessage(), e);
+        }
+        for (String message : exceeded) {
+            if (failOnBudgetExceeded) {
+                getLog().error(message);
+            } else {
+                getLog().warn(message);
+            }
+        }
+        if (exceeded.isEmpty()) {
+            getLog().info("Every bundle is within its size budget.");
+        }
+        return exceeded;
+    }
+
+    /**
+     * Minifies and bundles external <em>Javascript</em> and <em>CSS</em> content. The external dependency URI's must
+     * be listed in the corresponding dependencies file, by default this file is located at <em>src/main/resources/bundler/dependencies.json</em>.
+     * This feature is useful if you want to use the latest versions of the dependencies, assuming these dependencies have
+     * a <em>latest</em> URI you can point to.
+     * @param file The file containing the JSON list of URI's.
+     * @return True if the execution was successful.
+     */
+    private boolean bundleExternal(final File file) throws MojoExecutionException {
+        getLog().info("Bundling external Javascript and CSS dependencies.");
+        createMinifiers();
+        final List<Map<String, Object>> dependencies;
+        try {
+            dependencies = new ArrayList<>(new Gson().fromJson(getFileAsString(file), List.class));
+        } catch (IOException e) {
+            getLog().error("Failed to read file: " + file.getAbsolutePath());
+            return false;
+        }
+
+        if (dependencies.isEmpty()) {
+            getLog().info("No external dependencies defined.");
+        }
+
+        final List<String> uris = new ArrayList<>();
+        for (Map<String, Object> bundle : dependencies) {
+            for (FileExtension extension : getExtensions()) {
+                final List<String> list = (List<String>) bundle.get(extension.name());
+                if (list != null) {
+                    uris.addAll(list);
+                }
+            }
+        }
+
+        final File downloads = new File(getWorkDirectory(), "downloads");
+        final ConcurrentFetcher fetcher = new ConcurrentFetcher(getLog(), report, httpCache, downloads, offline,
+                fetchThreads, fetchThreadsPerHost, TimeUnit.SECONDS.toMillis(fetchTimeout));
+        try {
+            final Map<String, File> bodies;
+            try {
+                bodies = fetcher.fetchAll(uris);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Failed to fetch external dependencies: " + e.getMessage(), e);
+            }
+
+            for (Map<String, Object> bundle : dependencies) {
+                for (FileExtension extension : getExtensions()) {
+                    createExternalBundle(bundle, extension, bodies);
+                }
+            }
+        } finally {
+            FileUtils.deleteQuietly(downloads);
+        }
+
+        return true;
+    }
+
+    /**
+     * Will attempt to fetch external <em>Javascript</em> and <em>CSS</em> dependencies, minify
+     * them and then bundle them.
+     * @param bundle The map of bundle name to list of uri's.
+     * @param extension The desired bundle file extension.
+     * @param bodies The map of uri to the local file holding its fetched contents.
+     * @throws MojoExecutionException
+     */
+    private void createExternalBundle(final Map<String, Object> bundle, final FileExtension extension, final Map<String, File> bodies) throws MojoExecutionException {
+        final List<String> uris = (List<String>) bundle.get(extension.name());
+        if (uris == null || uris.isEmpty()) {
+            return;
+        }
+
+        final String name = (String) bundle.get("name");
+        final String fullPath = getBundleDirectory() + File.separator + name + "-bundle." + extension.name();
+        final File bundleFile = new File(fullPath);
+        final BuildReport.Bundle metrics = new BuildReport.Bundle(bundleFile.getName(), "external");
+        final long[] local = segments.get(bundleFile);
+        final List<Long> sizes = new ArrayList<>();
+        final List<String> paths = new ArrayList<>(uris);
+        try (BundleWriter writer = new BundleWriter(bundleFile)) {
+            for (String uri : uris) {
+                try {
+                    final File body = bodies.get(uri);
+                    final long size = writer.getSize();
+
+                    // Don't attempt to minify previously minified files.
+                    if (uri.endsWith("min." + extension.name())) {
+                        append(null, false, null, body, uri, writer, metrics);
+                    } else {
+                        append(getMinifier(extension), false, null, body, uri, writer, metrics);
+                    }
+                    sizes.add(writer.getSize() - size);
+                } catch (Exception e) {
+                    throw new MojoExecutionException(format("Failed to bundle external dependency from: %s (%s)", uri, e.getMessage()), e);
+                }
+            }
+
+            final long external = writer.getSize();
+            if (bundleFile.exists()) {
+                try (Reader in = newReader(bundleFile)) {
+                    IOUtils.copy(in, writer.getWriter());
+                }
+            }
+
+            final long existing = writer.getSize() - external;
+            if (local != null && ChunkSplitter.total(local) == existing) {
+                for (long size : local) {
+                    sizes.add(size);
+                }
+                final List<String> previous = contributors.get(bundleFile);
+                if (previous != null) {
+                    paths.addAll(previous);
+                }
+            } else if (existing > 0) {
+                sizes.add(existing);
+                paths.add("(local files)");
+            }
+
+            writer.commit();
+            hashes.put(bundleFile, writer.getHash());
+            segments.put(bundleFile, toArray(sizes));
+            contributors.put(bundleFile, paths);
+            if (optimizeCss && extension == css) {
+                optimize(bundleFile, metrics);
+            }
+            report.add(metrics);
+            if (minified != null) {
+                // Keep the external contents, so they can be added again when the local files are bundled again.
+                final byte[] bytes = new byte[(int) external];
+                try (InputStream in = Files.newInputStream(bundleFile.toPath())) {
+                    IOUtils.readFully(in, bytes);
+                }
+                externalContents.put(bundleFile.getName(), new String(bytes, UTF_8));
+            }
+        } catch (IOException e) {
+            getLog().error("Failed to write contents to file: " + fullPath);
+        }
+
+        final File destination = new File(projectBuildDirectory + File.separator + toPath);
+        if (!destination.isDirectory()) {
+            throw new MojoExecutionException("Invalid destination directory: " + destination.getAbsolutePath());
+        }
+
+        getLog().info(format("Copying external bundle file '%s' to '%s':", bundleFile.getName(), destination.getAbsolutePath()));
+
+        try {
+            final long start = System.nanoTime();
+            copyToDestination(bundleFile, destination);
+            metrics.copied(System.nanoTime() - start);
+        } catch (IOException e) {
+            getLog().error(format("Failed to move file '%s' to target directory 'ss': %s", bundleFile.getAbsolutePath(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Minifies and bundles <em>Javascript</em> and <em>CSS</em> files in the specified
+     * source directory. Once bundled, the bundle files are copied to the specified target directory.
+     * @param directory The source directory where the unminified <em>Javascript</em> and <em>CSS</em> files reside.
+     * @return True if the execution was successful.
+     */
+    boolean bundleLocal(final File directory) throws MojoExecutionException {
+        getLog().info("Bundling local Javascript and CSS dependencies.");
+
+        // Resolve the thread-bound build context and the minifiers before any worker threads need them.
+        createMinifiers();
+        final Map<File, Map<FileExtension, List<File>>> directories;
+        try {
+            directories = createScanner().scan(directory);
+            for (Map<FileExtension, List<File>> files : directories.values()) {
+                files.replaceAll(this::inlineImports);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new MojoExecutionException("Failed to scan directory: " + directory.getAbsolutePath(), e);
+        }
+        final Map<File, String> shared;
+        try {
+            shared = SharedInputs.find(directories);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to find files shared between bundles: " + e.getMessage(), e);
+        }
+        sharedMinified.clear();
+        sharedInputs = shared;
+        if (!shared.isEmpty()) {
+            getLog().info(format("Found %s file(s) shared between bundles.", shared.size()));
+        }
+
+        final List<BundleTask> tasks = new ArrayList<>();
+        for (Map.Entry<File, Map<FileExtension, List<File>>> entry : directories.entrySet()) {
+            if (commonChunk && entry.getKey().getName().equals(commonChunkName)) {
+                throw new MojoExecutionException(format("The common chunk name '%s' is also the name of a top-level directory.", commonChunkName));
+            }
+            for (Map.Entry<FileExtension, List<File>> files : entry.getValue().entrySet()) {
+                tasks.add(new BundleTask(entry.getKey().getName(), entry.getKey(), files.getKey(), files.getValue()));
+            }
+        }
+        if (commonChunk) {
+            tasks.addAll(extractCommonChunk(tasks, shared));
+        }
+
+        final Map<File, List<File>> bundles = runBundleTasks(tasks);
+        if (writeToBuildDirectory && copyBundleFilesOnly) {
+            excludeBundledResources(tasks);
+        }
+        if (bundles.isEmpty()) {
+            getLog().info("Either no files were found or the files were empty in directory: " + directory.getAbsolutePath());
+            return true;
+        }
+
+        final File destination = new File(projectBuildDirectory + File.separator + toPath);
+        if (!destination.isDirectory()) {
+            throw new MojoExecutionException("Invalid destination directory: " + destination.getAbsolutePath());
+        }
+
+        getLog().info(format("Copying the following %s bundle file(s) to '%s':", bundles.size(), destination.getAbsolutePath()));
+
+        for (Map.Entry<File, List<File>> entry : bundles.entrySet()) {
+            final File bundle = entry.getKey();
+            try {
+                // Once the external dependencies have been fetched, a bundle created again must hold them too.
+                addExternalContents(bundle);
+                final long start = System.nanoTime();
+                copyToDestination(bundle, destination);
+                final BuildReport.Bundle metrics = report.find(bundle.getName(), "local");
+                if (metrics != null) {
+                    metrics.copied(System.nanoTime() - start);
+                }
+                if (copyBundleFilesOnly) {
+                    final List<File> files = entry.getValue();
+                    for (File file : files) {
+                        // Excluded resources are never copied, unless they were copied before the plugin ran.
+                        if (!writeToBuildDirectory || getTargetFile(file).exists()) {
+                            deleteFile(file.getAbsolutePath());
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                getLog().error(format("Failed to move file '%s' to target directory 'ss': %s", bundle.getAbsolutePath(), e.getMessage()));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Move the files shared between bundles out of them, into a common bundle for each extension that every
+     * page can load first and cache. Only the first copy of each file is kept. A shared file is only moved if
+     * it is at the start of every bundle that holds it, in the same order as the other moved files, so that
+     * loading the common bundle first does not change the order in which any bundle applies its files. A
+     * shared <em>CSS</em> file after one of a page's own files would otherwise move earlier in the cascade.
+     * @param tasks The bundle tasks, whose files are updated.
+     * @param shared The content hash of every shared file.
+     * @return The common bundle tasks.
+     */
+    private List<BundleTask> extractCommonChunk(final List<BundleTask> tasks, final Map<File, String> shared) {
+        commonDependencies.clear();
+        final List<BundleTask> common = new ArrayList<>();
+        if (shared.isEmpty()) {
+            return common;
+        }
+        for (FileExtension extension : getExtensions()) {
+            final List<BundleTask> bundles = new ArrayList<>();
+            for (BundleTask task : tasks) {
+                if (task.extension == extension) {
+                    bundles.add(task);
+                }
+            }
+            final Set<String> leading = leadingSharedFiles(bundles, shared);
+            final Set<String> hashes = new HashSet<>();
+            final Set<String> kept = new HashSet<>();
+            final List<File> files = new ArrayList<>();
+            final List<File> copies = new ArrayList<>();
+            for (BundleTask task : bundles) {
+                for (Iterator<File> it = task.files.iterator(); it.hasNext(); ) {
+                    final File file = it.next();
+                    final String hash = shared.get(file);
+                    if (hash != null && !leading.contains(hash)) {
+                        kept.add(hash);
+                    } else if (hash != null) {
+                        if (hashes.add(hash)) {
+                            files.add(file);
+                        } else {
+                            copies.add(file);
+                        }
+                        it.remove();
+                        commonDependencies.put(task.toString(), commonChunkName + "-bundle." + extension.name());
+                    }
+                }
+            }
+            if (!kept.isEmpty()) {
+                getLog().info(format("Keeping %s shared %s file(s) in their bundles, as moving them would change the order of the files.",
+                        kept.size(), extension.name()));
+            }
+            if (!files.isEmpty()) {
+                getLog().info(format("Moving %s shared file(s) into the common bundle '%s-bundle.%s'.", files.size(), commonChunkName, extension.name()));
+                final BundleTask task = new BundleTask(commonChunkName, null, extension, files);
+                task.copies.addAll(copies);
+                common.add(task);
+            }
+        }
+        return common;
+    }
+
+    /**
+     * Find the shared files that can be moved into the common bundle without changing the order of any bundle.
+     * Each of them is only preceded by other such files in every bundle that holds it, and they appear in the
+     * same order in every bundle as they do in the common bundle.
+     * @param tasks The bundle tasks of a single extension.
+     * @param shared The content hash of every shared file.
+     * @return The content hashes of the files that can be moved.
+     */
+    private static Set<String> leadingSharedFiles(final List<BundleTask> tasks, final Map<File, String> shared) {
+        final Set<String> leading = new HashSet<>();
+        for (BundleTask task : tasks) {
+            for (File file : task.files) {
+                final String hash = shared.get(file);
+                if (hash != null) {
+                    leading.add(hash);
+                }
+            }
+        }
+
+        // Removing a file can move another out of the lead of its bundle, so repeat until nothing changes.
+        boolean changed;
+        do {
+            changed = false;
+            final Map<String, Integer> order = new HashMap<>();
+            for (BundleTask task : tasks) {
+                boolean prefix = true;
+                int last = -1;
+                for (File file : task.files) {
+                    final String hash = shared.get(file);
+                    if (hash == null || !leading.contains(hash)) {
+                        prefix = false;
+                        continue;
+                    }
+                    final int position = order.computeIfAbsent(hash, h -> order.size());
+                    if (prefix && position >= last) {
+                        last = position;
+                    } else {
+                        leading.remove(hash);
+                        prefix = false;
+                        changed = true;
+                    }
+                }
+            }
+        } while (changed);
+        return leading;
+    }
+
+    /**
+     * Copy a bundle file to the target directory, adding its content hash to the file name when
+     * <em>hashFileNames</em> is true.
+     * @param bundle The bundle file.
+     * @param destination The target directory.
+     * @throws IOException If the bundle could not be copied.
+     */
+    private void copyToDestination(final File bundle, final File destination) throws IOException {
+        final long[] sizes = segments.get(bundle);
+        if (maxChunkSize > 0 && sizes != null && bundle.length() > maxChunkSize && ChunkSplitter.total(sizes) == bundle.length()) {
+            final List<Long> chunks = ChunkSplitter.plan(sizes, maxChunkSize);
+            if (chunks.size() > 1) {
+                writeChunks(bundle, destination, chunks);
+                return;
+            }
+        }
+
+        String name = bundle.getName();
+        String hash = hashes.get(bundle);
+        if (assetManifest != null) {
+            if (hashFileNames) {
+                if (hash == null) {
+                    hash = ContentHash.of(bundle);
+                }
+                name = AssetManifest.hashedName(name, hash);
+            }
+            replaced(destination, earlierForms(bundle, assetManifest.put(bundle.getName(), name)), Collections.singleton(name));
+        }
+        final File target = new File(destination, name);
+        if (!target.equals(bundle)) {
+            if (writeToBuildDirectory) {
+                // The bundle was written beneath the build directory, so only its published name is needed.
+                Files.deleteIfExists(target.toPath());
+                try {
+                    Files.createLink(target.toPath(), bundle.toPath());
+                } catch (IOException | UnsupportedOperationException e) {
+                    FileUtils.copyFile(bundle, target, true);
+                }
+            } else {
+                FileUtils.copyFile(bundle, target, true);
+            }
+        }
+        outputs.put(target, hash);
+    }
+
+    /**
+     * Write the precompressed sidecars of the given files in the target directory when <em>gzip</em> is true.
+     * @param files The files, with the content hash of each, or null where it is not known.
+     * @throws IOException If a sidecar could not be written.
+     */
+    private void precompress(final Map<File, String> files) throws IOException {
+        if (gzip && !files.isEmpty()) {
+            new Precompressor(getLog(), new File(getWorkDirectory(), "sidecars.json"), gzipLevel).compress(files, Workers.count(threads));
+        }
+    }
+
+    /**
+     * Find the files written to the target directory since the given copy of the outputs was taken.
+     * @param before The outputs before the files were written.
+     * @return The files that were added or written with different contents, or whose contents are not known.
+     */
+    private Map<File, String> writtenSince(final Map<File, String> before) {
+        final Map<File, String> written = new LinkedHashMap<>();
+        for (Map.Entry<File, String> output : outputs.entrySet()) {
+            if (output.getValue() == null || !output.getValue().equals(before.get(output.getKey()))) {
+                written.put(output.getKey(), output.getValue());
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Write the asset manifest, if there is one, recording the common bundle every bundle depends on.
+     * @throws IOException If the manifest could not be written.
+     */
+    private void writeAssetManifest() throws IOException {
+        if (assetManifest == null) {
+            return;
+        }
+        for (Map.Entry<String, String> dependency : commonDependencies.entrySet()) {
+            assetManifest.addDependency(dependency.getKey(), dependency.getValue());
+        }
+        assetManifest.write(getLog());
+    }
+
+    /**
+     * Split a bundle file into chunks in the target directory, adding the content hash of every chunk to
+     * its file name when <em>hashFileNames</em> is true.
+     * @param bundle The bundle file.
+     * @param destination The target directory.
+     * @param chunks The number of bytes in each chunk.
+     * @throws IOException If a chunk could not be written.
+     */
+    private void writeChunks(final File bundle, final File destination, final List<Long> chunks) throws IOException {
+        getLog().info(format("Splitting bundle file '%s' into %s chunk(s) of at most %s byte(s).", bundle.getName(), chunks.size(), maxChunkSize));
+        final List<String> names = new ArrayList<>(chunks.size());
+        long position = 0;
+        for (int i = 0, j = chunks.size(); i < j; i++) {
+            final File chunk = new File(destination, ChunkSplitter.chunkName(bundle.getName(), i));
+            final String hash;
+            try (BundleWriter writer = new BundleWriter(chunk)) {
+                writer.append(bundle, position, chunks.get(i));
+                writer.commit();
+                hash = writer.getHash();
+            }
+            position += chunks.get(i);
+
+            File target = chunk;
+            if (hashFileNames) {
+                target = new File(destination, AssetManifest.hashedName(chunk.getName(), hash));
+                AtomicFiles.move(chunk.toPath(), target.toPath());
+            }
+            names.add(target.getName());
+            outputs.put(target, hash);
+        }
+        replaced(destination, earlierForms(bundle, assetManifest.putChunks(bundle.getName(), names)), names);
+    }
+
+    /**
+     * Get the names of the files that may hold an earlier form of a bundle in the target directory: those
+     * previously written for it during this build, and the bundle under its own name, which an earlier build
+     * may have written before file names were hashed or the bundle was split into chunks.
+     * @param bundle The bundle file.
+     * @param previous The names of the files previously written for the bundle during this build.
+     * @return The names.
+     */
+    private static Set<String> earlierForms(final File bundle, final Set<String> previous) {
+        final Set<String> names = new HashSet<>(previous);
+        names.add(bundle.getName());
+        return names;
+    }
+
+    /**
+     * Delete the files previously written for a bundle that it no longer uses, along with their precompressed
+     * sidecars. An external bundle replaces the local bundle of the same name, which it already includes.
+     * @param destination The target directory.
+     * @param previous The names of the files previously written for the bundle.
+     * @param current The names of the files now written for the bundle.
+     */
+    private void replaced(final File destination, final Set<String> previous, final Collection<String> current) {
+        for (String name : previous) {
+            if (!current.contains(name)) {
+                final File file = new File(destination, name);
+                outputs.remove(file);
+                FileUtils.deleteQuietly(file);
+                FileUtils.deleteQuietly(new File(destination, name + ".gz"));
+            }
+        }
+    }
+
+    /**
+     * Exclude the files bundled by the given tasks from the project resources, so that they are not
+     * copied to the target directory along with the bundles.
+     * @param tasks The bundle tasks.
+     */
+    private void excludeBundledResources(final List<BundleTask> tasks) {
+        if (resources == null) {
+            return;
+        }
+        final File source = new File(projectResourcesDirectory);
+        for (Resource resource : resources) {
+            if (resource.getDirectory() == null || !new File(resource.getDirectory()).getAbsoluteFile().equals(source.getAbsoluteFile())) {
+                continue;
+            }
+            for (BundleTask task : tasks) {
+                if (task.bundle == null) {
+                    continue;
+                }
+
+                // Files left out by the include and exclude patterns are not bundled, so they are still copied.
+                final List<String> patterns = new ArrayList<>();
+                if (task.directory != null && split(includes).isEmpty() && split(excludes).isEmpty()) {
+                    patterns.add(fromPath + "/" + task.directory.getName() + "/**/*." + task.extension.name());
+                } else {
+                    final List<File> replaced = new ArrayList<>(task.files);
+                    replaced.addAll(task.copies);
+                    for (File file : replaced) {
+                        patterns.add(source.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/'));
+                    }
+                }
+                for (String pattern : patterns) {
+                    if (!resource.getExcludes().contains(pattern)) {
+                        resource.addExclude(pattern);
+                        getLog().debug("Excluding bundled resource: " + pattern);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the directory bundle files are written to. When bundles are written to the build directory but
+     * published under hashed or chunk file names, they are kept in the plugin work directory, so that only
+     * the published files end up in the target directory.
+     * @return The target directory or the plugin work directory when <em>writeToBuildDirectory</em> is true,
+     *         otherwise the source directory.
+     */
+    private File getBundleDirectory() {
+        if (writeToBuildDirectory) {
+            if (hashFileNames || maxChunkSize > 0) {
+                return new File(getWorkDirectory(), "bundles");
+            }
+            return new File(projectBuildDirectory + File.separator + toPath);
+        }
+        return new File(projectResourcesDirectory + File.separator + fromPath);
+    }
+
+    /**
+     * Get the copy of a source file in the target directory.
+     * @param file The source file.
+     * @return The file it is copied to by the project resources.
+     */
+    private File getTargetFile(final File file) {
+        return new File(file.getAbsolutePath().replace(projectResourcesDirectory + File.separator + fromPath, projectBuildDirectory + File.separator + toPath));
+    }
+
+    /**
+     * Runs the given bundle tasks, either one after another or concurrently when <em>parallel</em> is true.
+     * The resulting bundles are always returned in the order of the given tasks, and every task is run to
+     * completion before any failures are reported.
+     * @param tasks The bundle tasks, one for each top-level directory and file extension.
+     * @return The map of bundle file to the files it was created from.
+     * @throws MojoExecutionException If one or more of the tasks failed.
+     */
+    private Map<File, List<File>> runBundleTasks(final List<BundleTask> tasks) throws MojoExecutionException {
+        final Map<File, List<File>> bundles = new LinkedHashMap<>();
+        final List<String> errors = new ArrayList<>();
+        if (!parallel || tasks.size() < 2) {
+            for (BundleTask task : tasks) {
+                try {
+                    task.call();
+                    task.addTo(bundles);
+                } catch (RuntimeException e) {
+                    errors.add(format("%s: %s", task, e.getMessage()));
+                }
+            }
+        } else {
+            final int size = Math.min(Workers.count(threads), tasks.size());
+            getLog().info(format("Bundling %s bundle(s) using %s thread(s).", tasks.size(), size));
+            final ExecutorService executor = Workers.newPool("resource-bundler", size);
+            try {
+                final List<Future<File>> futures = new ArrayList<>();
+                for (BundleTask task : tasks) {
+                    futures.add(executor.submit(task));
+                }
+                for (int i = 0, j = tasks.size(); i < j; i++) {
+                    final BundleTask task = tasks.get(i);
+                    try {
+                        futures.get(i).get();
+                        task.addTo(bundles);
+                    } catch (ExecutionException e) {
+                        errors.add(format("%s: %s", task, e.getCause().getMessage()));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new MojoExecutionException("Interrupted while waiting for bundle: " + task);
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            for (String error : errors) {
+                getLog().error("Failed to create bundle " + error);
+            }
+            throw new MojoExecutionException(format("Failed to create %s of %s bundle(s). See above for details.", errors.size(), tasks.size()));
+        }
+        return bundles;
+    }
+
+    /**
+     * Create the scanner that finds the files to bundle, from the <em>includes</em> and <em>excludes</em>
+     * patterns and any excluded top-level directories.
+     * @return The scanner.
+     */
+    private ResourceScanner createScanner() {
+        final List<String> exclusions = new ArrayList<>(split(excludes));
+        if (excludedDirectories != null && excludedDirectories.length() > 0) {
+            final String suffix = excludedDirectories.length() > 1 ? "ies" : "y";
+            getLog().info(format("Ignoring top-level director%s '%s'.", suffix, excludedDirectories));
+            for (String name : excludedDirectories.split(",")) {
+                exclusions.add(ResourceScanner.literal(name));
+            }
+        }
+        return new ResourceScanner(getExtensions(), split(includes), exclusions);
+    }
+
+    private static long[] toArray(final List<Long> list) {
+        final long[] array = new long[list.size()];
+        for (int i = 0, j = array.length; i < j; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    private static List<String> split(final String list) {
+        if (list == null || list.length() == 0) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(list.split(","));
+    }
+
+    /**
+     * Delete the files at the given absolute path.
+     * @param absolutePath The absolute path to directory you wish to delete files from.
+     */
+    private void deleteFile(final String absolutePath) {
+        final String destinationBasePath = projectBuildDirectory + File.separator + toPath;
+        final String destinationFileAbsolutePath = absolutePath.replace(projectResourcesDirectory + File.separator + fromPath, destinationBasePath);
+        getLog().info("Deleting file: " + destinationFileAbsolutePath);
+        final File fileToDelete = new File(destinationFileAbsolutePath);
+        boolean deleted = fileToDelete.delete();
+        if (!deleted) {
+            getLog().error("Failed to delete file: " + destinationFileAbsolutePath);
+        }
+        recursivelyDeleteEmptyDirectories(fileToDelete.getParent(), destinationBasePath);
+    }
+
+    /**
+     * If only copy across the bundle files then this method will attempt to delete empty parent directories of the
+     * file that was deleted.
+     * @param destinationPath The path to the directory the file resides in, and any parent directory there after.
+     * @param destinationBasePath The base target directory. This directory and its parents should not be deleted.
+     */
+    private void recursivelyDeleteEmptyDirectories(final String destinationPath, final String destinationBasePath) {
+        if (destinationPath == null || destinationPath.length() == 0) {
+            return;
+        }
+
+        if (destinationPath.equals(destinationBasePath)) {
+            return;
+        }
+
+        final File file = new File(destinationPath);
+        if (!file.exists()) {
+            return;
+        }
+
+        if (file.isDirectory()) {
+            if (file.listFiles().length > 0) {
+                return;
+            }
+            file.delete();
+        }
+        recursivelyDeleteEmptyDirectories(file.getParent(), destinationBasePath);
+    }
+
+    /**
+     * Creates a single file, for each of the top-level directories. This file will
+     * contain the contents of all child files of the given extension. This contents
+     * will minified.
+     * @param bundleName The name of the bundle.
+     * @param extension The extension.
+     * @param files The child files that will be minified and concatenated into the bundle file.
+     * @return The resulting bundle file.
+     */
+    File createBundle(String bundleName, FileExtension extension, List<File> files) {
+        if (files.isEmpty()) {
+            return null;
+        }
+
+        final String name = bundleName + "-bundle" + "." + extension.name();
+        final String absolutePath = getBundleDirectory() + File.separator + name;
+        final File bundle = new File(absolutePath);
+        final CssAssetInliner assets = extension == css ? cssAssetInliner : null;
+
+        // The images and fonts that may be inlined are inputs of the bundle as well.
+        List<File> fingerprinted = files;
+        if (assets != null) {
+            try {
+                fingerprinted = new ArrayList<>(files);
+                fingerprinted.addAll(assets.assets(files));
+            } catch (IOException e) {
+                getLog().warn(format("Failed to find the assets referenced by bundle file '%s': %s", name, e.getMessage()));
+                fingerprinted = files;
+            }
+        }
+
+        final String settings = getBundleSettings(extension);
+        List<BundleManifest.Input> inputs = null;
+        if (manifest != null) {
+            try {
+                inputs = manifest.fingerprint(name, fingerprinted, getBuildContext());
+                if (manifest.isUpToDate(name, settings, inputs, bundle)) {
+                    getLog().info(format("Skipping bundle file '%s'. None of its %s file(s) have changed.", name, files.size()));
+                    final BuildReport.Bundle metrics = new BuildReport.Bundle(name, "local");
+                    metrics.skipped = true;
+                    for (File file : files) {
+                        metrics.inputBytes += file.length();
+                    }
+                    metrics.outputBytes = bundle.length();
+                    report.add(metrics);
+                    hashes.put(bundle, manifest.getOutput(name));
+                    final long[] sizes = manifest.getSegments(name);
+                    if (sizes != null) {
+                        segments.put(bundle, sizes);
+                    }
+                    return bundle;
+                }
+            } catch (IOException e) {
+                getLog().warn(format("Failed to check whether bundle file '%s' is up to date: %s", name, e.getMessage()));
+                inputs = null;
+            }
+        }
+
+        String key = null;
+        if (bundleCache != null) {
+            try {
+                // Inlining CSS assets rewrites URLs relative to the source directory, so the layout matters too.
+                key = BundleCache.key(settings, getInputHashes(fingerprinted, inputs),
+                        assets != null || extension == css && inlineCssImports ? getInputPaths(fingerprinted) : null);
+                final BundleCache.Entry cached = bundleCache.get(key);
+                if (cached != null) {
+                    return restore(bundle, files, settings, inputs, cached);
+                }
+            } catch (IOException e) {
+                getLog().warn(format("Failed to restore bundle file '%s' from the shared bundle cache: %s", name, e.getMessage()));
+            }
+        }
+
+        getLog().info(format("Found the following %s file(s) that will be minified and bundled into file '%s':", files.size(), name));
+        final BuildReport.Bundle metrics = new BuildReport.Bundle(name, "local");
+        final long[] sizes = new long[files.size()];
+        try (BundleWriter writer = new BundleWriter(bundle)) {
+            for (int i = 0, j = files.size(); i < j; i++) {
+                final File file = files.get(i);
+                final long size = writer.getSize();
+                try {
+                    append(getMinifier(extension), extension == css && inlineCssImports, assets, file, file.getAbsolutePath(), writer, metrics);
+                    getLog().info(i+1 + ". " + file.getAbsolutePath());
+
+                } catch (IOException e) {
+                    getLog().error(format("Failed to read file: %s", file.getAbsolutePath()));
+
+                    // A bundle missing a file must not be restored by other builds.
+                    key = null;
+                }
+                sizes[i] = writer.getSize() - size;
+            }
+
+            if (writer.getSize() == 0) {
+                return null;
+            }
+
+            writer.commit();
+            hashes.put(bundle, writer.getHash());
+            segments.put(bundle, sizes);
+            if (optimizeCss && extension == css) {
+                optimize(bundle, metrics);
+            }
+            if (inputs != null) {
+                manifest.update(name, settings, inputs, hashes.get(bundle), segments.get(bundle));
+            }
+            if (key != null) {
+                try {
+                    bundleCache.put(key, bundle, segments.get(bundle));
+                } catch (IOException e) {
+                    getLog().warn(format("Failed to add bundle file '%s' to the shared bundle cache: %s", name, e.getMessage()));
+                }
+            }
+            report.add(metrics);
+            return bundle;
+        } catch (IOException e) {
+            getLog().error("Failed to write contents to file: " + absolutePath);
+            return null;
+        }
+    }
+
+    /**
+     * Restore a bundle file from the shared bundle cache.
+     * @param bundle The bundle file.
+     * @param files The files the bundle is created from.
+     * @param settings The settings to record in the bundle manifest.
+     * @param inputs The input fingerprints to record in the bundle manifest, or null if there is none.
+     * @param cached The cached bundle.
+     * @return The bundle file.
+     * @throws IOException If the cached bundle could not be copied.
+     */
+    private File restore(final File bundle, final List<File> files, final String settings, final List<BundleManifest.Input> inputs, final BundleCache.Entry cached) throws IOException {
+        getLog().info(format("Restoring bundle file '%s' of %s file(s) from the shared bundle cache.", bundle.getName(), files.size()));
+        try (BundleWriter writer = new BundleWriter(bundle)) {
+            writer.append(cached.bundle, 0, cached.bundle.length());
+            writer.commit();
+            hashes.put(bundle, writer.getHash());
+        }
+        segments.put(bundle, cached.segments);
+        if (inputs != null) {
+            manifest.update(bundle.getName(), settings, inputs, hashes.get(bundle), cached.segments);
+        }
+
+        final BuildReport.Bundle metrics = new BuildReport.Bundle(bundle.getName(), "local");
+        metrics.restored = true;
+        for (File file : files) {
+            metrics.inputBytes += file.length();
+        }
+        metrics.outputBytes = bundle.length();
+        metrics.ratio = BuildReport.ratio(metrics.outputBytes, metrics.inputBytes);
+        report.add(metrics);
+        return bundle;
+    }
+
+    /**
+     * Get the content hash of every file of a bundle.
+     * @param files The files, in bundle order.
+     * @param inputs The fingerprints of the files, or null if they have not been taken.
+     * @return The content hashes, in bundle order.
+     * @throws IOException If a file could not be read.
+     */
+    private static List<String> getInputHashes(final List<File> files, final List<BundleManifest.Input> inputs) throws IOException {
+        final List<String> result = new ArrayList<>(files.size());
+        if (inputs != null) {
+            for (BundleManifest.Input input : inputs) {
+                result.add(input.hash);
+            }
+        } else {
+            for (File file : files) {
+                result.add(ContentHash.of(file));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the path of every input file relative to the source directory.
+     * @param files The input files, in bundle order.
+     * @return The paths, with forward slashes, in the same order.
+     */
+    private List<String> getInputPaths(final List<File> files) {
+        final Path source = getSourceDirectory().getAbsoluteFile().toPath().normalize();
+        final List<String> result = new ArrayList<>(files.size());
+        for (File file : files) {
+            result.add(source.relativize(file.getAbsoluteFile().toPath().normalize()).toString().replace(File.separatorChar, '/'));
+        }
+        return result;
+    }
+
+    /**
+     * Identify the plugin version and every setting that affects the contents of a bundle, other than its files.
+     * Bundles are only skipped, or restored from the shared bundle cache, when these are unchanged.
+     * @param extension The file extension of the bundle.
+     * @return The settings.
+     */
+    private String getBundleSettings(final FileExtension extension) {
+        return pluginVersion + '\0' + getMinifier(extension).getCacheKey() + '\0' + minifierOptions + '\0' + (optimizeCss && extension == css)
+                + '\0' + (inlineCssImports && extension == css)
+                + '\0' + (extension == css && cssAssetInliner != null ? inlineCssAssetMaxSize : -1);
+    }
+
+    /**
+     * Remove duplicate rules and declarations from a <em>CSS</em> bundle file, and merge adjacent rules with
+     * the same selector, recording the bytes saved in the bundle metrics. The bundle is left as it is if it
+     * cannot be parsed.
+     * @param bundle The bundle file, whose content hash and file sizes have been recorded.
+     * @param metrics The bundle metrics.
+     * @throws IOException If the bundle could not be read or written.
+     */
+    private void optimize(final File bundle, final BuildReport.Bundle metrics) throws IOException {
+        final long start = System.nanoTime();
+        final byte[] contents = Files.readAllBytes(bundle.toPath());
+        final long[] sizes = segments.get(bundle);
+        final List<String> files = new ArrayList<>(sizes.length);
+        int position = 0;
+        for (long size : sizes) {
+            files.add(new String(contents, position, (int) size, UTF_8));
+            position += (int) size;
+        }
+
+        final List<String> optimized = CssOptimizer.optimize(files);
+        if (optimized == null) {
+            getLog().warn(format("Skipping optimization of bundle file '%s'. It could not be parsed.", bundle.getName()));
+            return;
+        }
+
+        final long[] optimizedSizes = new long[optimized.size()];
+        try (BundleWriter writer = new BundleWriter(bundle)) {
+            for (int i = 0, j = optimized.size(); i < j; i++) {
+                final long size = writer.getSize();
+                writer.getWriter().write(optimized.get(i));
+                optimizedSizes[i] = writer.getSize() - size;
+            }
+            writer.commit();
+            hashes.put(bundle, writer.getHash());
+            segments.put(bundle, optimizedSizes);
+        }
+        metrics.optimized(contents.length - bundle.length(), System.nanoTime() - start);
+    }
+
+    /**
+     * Append the contents of the given file to the bundle, minifying them unless no minifier is given, and
+     * record the time taken and the bytes read and written in the bundle metrics.
+     * @param minifier The minifier, or <code>null</code> to append the contents as they are.
+     * @param imports If true, the imports of a minified <em>CSS</em> file that were inlined are removed.
+     * @param assets The inliner of the assets referenced by a minified <em>CSS</em> file, or <code>null</code>.
+     * @param file The file to append.
+     * @param path The path or URI to report the file under.
+     * @param writer The bundle writer.
+     * @param metrics The bundle metrics.
+     * @throws IOException If something went wrong.
+     */
+    private void append(final StreamMinifier minifier, final boolean imports, final CssAssetInliner assets, final File file, final String path, final BundleWriter writer, final BuildReport.Bundle metrics) throws IOException {
+        final BuildReport.Input input = new BuildReport.Input(path);
+        final long size = writer.getSize();
+        final long written = writer.getWriteNanos();
+        final long start = System.nanoTime();
+        final long read;
+        if (minifier == null) {
+            final Metered.Input in = new Metered.Input(Files.newInputStream(file.toPath()));
+            try (Reader reader = new InputStreamReader(in, UTF_8)) {
+                IOUtils.copy(reader, writer.getWriter());
+            }
+            read = in.getNanos();
+        } else if (imports || assets != null) {
+            final StringWriter buffer = new StringWriter();
+            read = minify(minifier, file, buffer, input);
+            String contents = buffer.toString();
+            if (imports) {
+                // Kept imports are rewritten as strings, which the asset inliner leaves alone.
+                contents = CssImportResolver.strip(contents, file, getSourceDirectory());
+            }
+            writer.getWriter().write(assets == null ? contents : assets.rewrite(contents, file));
+        } else {
+            read = minify(minifier, file, writer.getWriter(), input);
+        }
+        final long output = writer.getSize() - size;
+        final long write = writer.getWriteNanos() - written;
+        input.measured(file.length(), output, read, write, System.nanoTime() - start);
+        metrics.add(input);
+    }
+
+    /**
+     * Minify the contents of the given file, writing the result to the writer. When minified files are
+     * kept in memory, the result kept for an unchanged file is written instead.
+     * @param minifier The minifier to use.
+     * @param file The file to minify.
+     * @param out Where to write the minified file contents.
+     * @param input The metrics of the file, which record whether a previous result was used.
+     * @return The time spent reading the file, in nanoseconds.
+     * @throws IOException If something went wrong.
+     */
+    private long minify(final StreamMinifier minifier, final File file, final Writer out, final BuildReport.Input input) throws IOException {
+        if (minified == null) {
+            return minifyShared(minifier, file, out, input);
+        }
+
+        final long start = System.nanoTime();
+        final Minified kept = minified.get(file);
+        if (kept != null && kept.isCurrent(file, minifier)) {
+            out.write(kept.contents);
+            input.cached = true;
+            return System.nanoTime() - start;
         }
 
-        final File dependencies = new File(externalDependenciesFilePath);
-        if (!dependencies.exists()) {
-            getLog().info("Skipping bundling of external dependencies. No configuration file found at: " + externalDependenciesFilePath);
-        } else {
-            if (!bundleExternal(dependencies)) {
-                getLog().error("Bundling of external dependencies failed.");
-                return;
-            }
+        // Record the size and last modified time before reading, so a change made meanwhile is not missed.
+        final Minified result = new Minified(file, minifier);
+        final StringWriter buffer = new StringWriter();
+        final long read = minifyShared(minifier, file, buffer, input);
+        result.contents = buffer.toString();
+        minified.put(file, result);
+        out.write(result.contents);
+        return read;
+    }
+
+    /**
+     * Minify the contents of the given file, writing the result to the writer. A file with the same contents
+     * as a file in another bundle is only minified once, by whichever bundle gets to it first.
+     * @param minifier The minifier to use.
+     * @param file The file to minify.
+     * @param out Where to write the minified file contents.
+     * @param input The metrics of the file, which record whether a previous result was used.
+     * @return The time spent reading the file, in nanoseconds.
+     * @throws IOException If something went wrong.
+     */
+    private long minifyShared(final StreamMinifier minifier, final File file, final Writer out, final BuildReport.Input input) throws IOException {
+        final String hash = sharedInputs.get(file);
+        if (hash == null) {
+            return minifyCached(minifier, file, out, input);
         }
 
-        getLog().info("Bundling completed successfully!");
+        final long start = System.nanoTime();
+        final long[] read = new long[1];
+        final FutureTask<String> task = new FutureTask<>(() -> {
+            final StringWriter buffer = new StringWriter();
+            read[0] = minifyCached(minifier, file, buffer, input);
+            return buffer.toString();
+        });
+        final FutureTask<String> existing = sharedMinified.putIfAbsent(minifier.getCacheKey() + ":" + hash, task);
+        if (existing == null) {
+            task.run();
+        } else {
+            input.cached = true;
+        }
+        try {
+            out.write((existing == null ? task : existing).get());
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for: " + file.getAbsolutePath());
+        }
+        return existing == null ? read[0] : System.nanoTime() - start;
     }
 
     /**
-     * Minifies and bundles external <em>Javascript</em> and <em>CSS</em> content. The external dependency URI's must
-     * be listed in the corresponding dependencies file, by default this file is located at <em>src/main/resources/bundler/dependencies.json</em>.
-     * This feature is useful if you want to use the latest versions of the dependencies, assuming these dependencies have
-     * a <em>latest</em> URI you can point to.
-     * @param file The file containing the JSON list of URI's.
-     * @return True if the execution was successful.
+     * Minify the contents of the given file, writing the result to the writer. When the minification
+     * cache is enabled the cached result is copied instead, and on a cache miss the result is added to it.
+     * @param minifier The minifier to use on a cache miss.
+     * @param file The file to minify.
+     * @param out Where to write the minified file contents.
+     * @param input The metrics of the file, which record whether the cached result was used.
+     * @return The time spent reading the file, in nanoseconds.
+     * @throws IOException If something went wrong.
      */
-    private boolean bundleExternal(final File file) throws MojoExecutionException {
-        getLog().info("Bundling external Javascript and CSS dependencies.");
-        final List<Map<String, Object>> dependencies;
+    private long minifyCached(final StreamMinifier minifier, final File file, final Writer out, final BuildReport.Input input) throws IOException {
+        if (minificationCache == null) {
+            final Metered.Input in = new Metered.Input(Files.newInputStream(file.toPath()));
+            try (Reader reader = new InputStreamReader(in, UTF_8)) {
+                minifier.minify(reader, out);
+            }
+            return in.getNanos();
+        }
+
+        final long start = System.nanoTime();
+        final String key = MinificationCache.key(minifier, file);
+        final long hashed = System.nanoTime() - start;
+        if (minificationCache.copyTo(key, out)) {
+            input.cached = true;
+            return hashed;
+        }
+
+        MinificationCache.EntryWriter entry = null;
         try {
-            dependencies = new ArrayList<>(new Gson().fromJson(getFileAsString(file), List.class));
+            entry = minificationCache.open(key, out);
         } catch (IOException e) {
-            getLog().error("Failed to read file: " + file.getAbsolutePath());
-            return false;
+            getLog().warn("Failed to write to the minification cache: " + e.getMessage());
         }
 
-        if (dependencies.isEmpty()) {
-            getLog().info("No external dependencies defined.");
+        final Metered.Input in = new Metered.Input(Files.newInputStream(file.toPath()));
+        try (Reader reader = new InputStreamReader(in, UTF_8)) {
+            minifier.minify(reader, entry != null ? entry : out);
+        } catch (IOException | RuntimeException e) {
+            if (entry != null) {
+                entry.abort();
+            }
+            throw e;
         }
 
-        for (Map<String, Object> bundle : dependencies) {
-            createExternalBundle(bundle, js);
-            createExternalBundle(bundle, css);
+        if (entry != null) {
+            try {
+                entry.flush();
+                entry.commit();
+            } catch (IOException e) {
+                entry.abort();
+                getLog().warn("Failed to write to the minification cache: " + e.getMessage());
+            }
         }
+        return hashed + in.getNanos();
+    }
 
-        return true;
+    /**
+     * Keep the minified contents of every file in memory, so that bundling again after a change only
+     * minifies the files that changed.
+     */
+    void keepMinifiedInMemory() {
+        minified = new ConcurrentHashMap<>();
     }
 
     /**
-     * Will attempt to fetch external <em>Javascript</em> and <em>CSS</em> dependencies, minify
-     * them and then bundle them.
-     * @param bundle The map of bundle name to list of uri's.
-     * @param extension The desired bundle file extension.
-     * @throws MojoExecutionException
+     * Check whether files can move between bundles, so that a change to any file may change any bundle.
+     * @return True if shared files are moved into a common bundle.
      */
-    private void createExternalBundle(final Map<String, Object> bundle, final FileExtension extension) throws MojoExecutionException {
-        final List<String> uris = (List<String>) bundle.get(extension.name());
-        if (uris == null || uris.isEmpty()) {
-            return;
+    boolean hasCommonChunk() {
+        return commonChunk;
+    }
+
+    /**
+     * Bundle every top-level directory again, and copy the bundles to the target directory along with the
+     * precompressed sidecars of those that changed.
+     * @throws MojoExecutionException If the bundles could not be created or copied.
+     */
+    void rebundleAll() throws MojoExecutionException {
+        final Map<File, String> before = new LinkedHashMap<>(outputs);
+        bundleLocal(getSourceDirectory());
+        try {
+            precompress(writtenSince(before));
+        } catch (IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+        try {
+            if (manifest != null) {
+                manifest.save();
+            }
+            writeAssetManifest();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to write manifest: " + e.getMessage(), e);
         }
+    }
 
-        final String name = (String) bundle.get("name");
-        final String fullPath = projectResourcesDirectory + File.separator + fromPath + File.separator + name + "-bundle." + extension.name();
-        final File bundleFile = new File(fullPath);
-        final StringBuilder builder = new StringBuilder();
-        for (String uri : uris) {
-            try {
-                getLog().info("Fetching external dependency: " + uri);
-                final String content = ExternalDependencyFetcher.fetch(uri);
+    /**
+     * Get the directory the <em>Javascript</em> and <em>CSS</em> files are bundled from.
+     * @return The source directory.
+     */
+    File getSourceDirectory() {
+        return new File(projectResourcesDirectory + File.separator + fromPath);
+    }
 
-                // Don't attempt to minify previously minified files.
-                if (uri.endsWith("min.js") || uri.endsWith("min.css")) {
-                    builder.append(content);
-                    continue;
-                }
+    /**
+     * Bundle the files with the given extension beneath a single top-level directory again, and copy
+     * the bundle to the target directory, writing its precompressed sidecar again if it changed.
+     * @param directory The top-level directory.
+     * @param extension The file extension.
+     * @return The bundle file, or null if there were no files to bundle.
+     * @throws MojoExecutionException If the bundle could not be created or copied.
+     */
+    File rebundle(final File directory, final FileExtension extension) throws MojoExecutionException {
+        createMinifiers();
 
-                final Minifier minifier = extension == FileExtension.js ? new JavascriptMinifier(getLog(), getContext()) : new CssMinifier();
-                builder.append(minifier.minify(content));
-            } catch (Exception e) {
-                throw new MojoExecutionException("Failed to fetch external dependency from: " + uri);
-            }
+        // The shared files found by the last full bundle may have changed since.
+        sharedInputs = Collections.emptyMap();
+        final BundleTask task;
+        try {
+            task = new BundleTask(directory.getName(), directory, extension,
+                    inlineImports(extension, createScanner().scan(getSourceDirectory(), directory).get(extension)));
+        } catch (IOException | UncheckedIOException e) {
+            throw new MojoExecutionException("Failed to scan directory: " + directory.getAbsolutePath(), e);
         }
-
+        final File bundle;
         try {
-            if (bundleFile.exists()) {
-                builder.append(FileUtils.readFileToString(bundleFile, UTF_8));
-            }
+            bundle = task.call();
+        } catch (RuntimeException e) {
+            throw new MojoExecutionException(format("Failed to create bundle %s: %s", task, e.getMessage()), e);
+        }
+        if (bundle == null) {
+            return null;
+        }
 
-            FileUtils.writeStringToFile(bundleFile, builder.toString(), UTF_8);
+        try {
+            addExternalContents(bundle);
         } catch (IOException e) {
-            getLog().error("Failed to write contents to file: " + fullPath);
+            throw new MojoExecutionException(format("Failed to add external dependencies to bundle %s: %s", task, e.getMessage()), e);
         }
 
         final File destination = new File(projectBuildDirectory + File.separator + toPath);
-        if (!destination.isDirectory()) {
-            throw new MojoExecutionException("Invalid destination directory: " + destination.getAbsolutePath());
-        }
-
-        getLog().info(format("Copying external bundle file '%s' to '%s':", bundleFile.getName(), destination.getAbsolutePath()));
-
         try {
-            FileUtils.copyFileToDirectory(bundleFile, destination, true);
+            FileUtils.forceMkdir(destination);
+            final Map<File, String> before = new LinkedHashMap<>(outputs);
+            copyToDestination(bundle, destination);
+            precompress(writtenSince(before));
+            if (manifest != null) {
+                manifest.save();
+            }
+            writeAssetManifest();
         } catch (IOException e) {
-            getLog().error(format("Failed to move file '%s' to target directory 'ss': %s", bundleFile.getAbsolutePath(), e.getMessage()));
+            throw new MojoExecutionException(format("Failed to copy bundle %s: %s", task, e.getMessage()), e);
         }
+        return bundle;
     }
 
     /**
-     * Minifies and bundles <em>Javascript</em> and <em>CSS</em> files in the specified
-     * source directory. Once bundled, the bundle files are copied to the specified target directory.
-     * @param directory The source directory where the unminified <em>Javascript</em> and <em>CSS</em> files reside.
-     * @return True if the execution was successful.
+     * Add the external dependencies fetched by the first build back to the start of a bundle that was just
+     * created again from its local files.
+     * @param bundle The bundle file.
+     * @throws IOException If the bundle could not be written.
      */
-    boolean bundleLocal(final File directory) throws MojoExecutionException {
-        getLog().info("Bundling local Javascript and CSS dependencies.");
-        final Map<File, List<File>> bundles = new HashMap<>();
-        final List<File> directories = filterExcludedDirectories(directory.listFiles());
-        for (File f : directories) {
-            if (f.isDirectory()) {
-                final String bundleName = f.getName();
-                List<File> files = collectFiles(f, js, new ArrayList<>());
-                if (!files.isEmpty()) {
-                    final File bundle = createBundle(bundleName, js, files);
-                    if (bundle != null) {
-                        bundles.put(bundle, files);
-                    }
-                }
-
-                files = collectFiles(f, css, new ArrayList<>());
-                if (!files.isEmpty()) {
-                    final File bundle = createBundle(bundleName, css, files);
-                    if (bundle != null) {
-                        bundles.put(bundle, files);
-                    }
-                }
+    private void addExternalContents(final File bundle) throws IOException {
+        final String external = externalContents.get(bundle.getName());
+        if (external == null) {
+            return;
+        }
+        try (BundleWriter writer = new BundleWriter(bundle)) {
+            writer.getWriter().write(external);
+            final long size = writer.getSize();
+            try (Reader in = newReader(bundle)) {
+                IOUtils.copy(in, writer.getWriter());
             }
+            writer.commit();
+            hashes.put(bundle, writer.getHash());
+            final long[] local = segments.get(bundle);
+            final long[] sizes = new long[local == null ? 2 : local.length + 1];
+            sizes[0] = size;
+            if (local == null) {
+                sizes[1] = bundle.length() - size;
+            } else {
+                System.arraycopy(local, 0, sizes, 1, local.length);
+            }
+            segments.put(bundle, sizes);
         }
+    }
 
-        if (bundles.isEmpty()) {
-            getLog().info("Either no files were found or the files were empty in directory: " + directory.getAbsolutePath());
-            return true;
+    /**
+     * Check whether a single top-level directory still has files with the given extension to bundle.
+     * @param directory The top-level directory.
+     * @param extension The file extension.
+     * @return True if the directory exists and has files to bundle.
+     * @throws MojoExecutionException If the directory could not be scanned.
+     */
+    boolean hasFilesToBundle(final File directory, final FileExtension extension) throws MojoExecutionException {
+        if (!directory.isDirectory()) {
+            return false;
+        }
+        try {
+            final List<File> files = createScanner().scan(getSourceDirectory(), directory).get(extension);
+            return files != null && !files.isEmpty();
+        } catch (IOException | UncheckedIOException e) {
+            throw new MojoExecutionException("Failed to scan directory: " + directory.getAbsolutePath(), e);
         }
+    }
 
+    /**
+     * Remove the bundle of a top-level directory that has no files with the given extension left, along with
+     * the files written for it to the target directory, their precompressed sidecars, and its entries in the
+     * asset manifest and the bundle manifest. A bundle that also holds external dependencies is written again
+     * with only those.
+     * @param bundleName The name of the top-level directory.
+     * @param extension The file extension.
+     * @return True if there was a bundle to remove.
+     * @throws MojoExecutionException If the bundle could not be removed.
+     */
+    boolean removeBundle(final String bundleName, final FileExtension extension) throws MojoExecutionException {
+        final String name = bundleName + "-bundle." + extension.name();
+        final File bundle = new File(getBundleDirectory(), name);
         final File destination = new File(projectBuildDirectory + File.separator + toPath);
-        if (!destination.isDirectory()) {
-            throw new MojoExecutionException("Invalid destination directory: " + destination.getAbsolutePath());
+        if (manifest != null) {
+            manifest.remove(name);
         }
 
-        getLog().info(format("Copying the following %s bundle file(s) to '%s':", bundles.size(), destination.getAbsolutePath()));
-
-        for (Map.Entry<File, List<File>> entry : bundles.entrySet()) {
-            final File bundle = entry.getKey();
-            try {
-                FileUtils.copyFileToDirectory(bundle, destination, true);
-                if (copyBundleFilesOnly) {
-                    final List<File> files = entry.getValue();
-                    for (File file : files) {
-                        deleteFile(file.getAbsolutePath());
+        boolean removed = false;
+        try {
+            final String external = externalContents.get(name);
+            if (external != null) {
+                try (BundleWriter writer = new BundleWriter(bundle)) {
+                    writer.getWriter().write(external);
+                    final long size = writer.getSize();
+                    writer.commit();
+                    hashes.put(bundle, writer.getHash());
+                    segments.put(bundle, new long[] {size});
+                }
+                FileUtils.forceMkdir(destination);
+                final Map<File, String> before = new LinkedHashMap<>(outputs);
+                copyToDestination(bundle, destination);
+                precompress(writtenSince(before));
+                getLog().info(format("No files left to bundle into '%s'. It now holds only its external dependencies.", name));
+                removed = true;
+            } else {
+                final Set<String> names = new HashSet<>();
+                names.add(name);
+                if (assetManifest != null) {
+                    names.addAll(assetManifest.remove(name));
+                }
+                for (String file : names) {
+                    for (File stale : new File[] {new File(destination, file), new File(destination, file + ".gz")}) {
+                        outputs.remove(stale);
+                        removed |= Files.deleteIfExists(stale.toPath());
                     }
                 }
-            } catch (IOException e) {
-                getLog().error(format("Failed to move file '%s' to target directory 'ss': %s", bundle.getAbsolutePath(), e.getMessage()));
+                removed |= Files.deleteIfExists(bundle.toPath());
+                hashes.remove(bundle);
+                segments.remove(bundle);
+                contributors.remove(bundle);
+                commonDependencies.remove(name);
+                if (removed) {
+                    getLog().info(format("No files left to bundle into '%s'. Removed it from the target directory.", name));
+                }
+            }
+
+            if (manifest != null) {
+                manifest.save();
             }
+            writeAssetManifest();
+        } catch (IOException e) {
+            throw new MojoExecutionException(format("Failed to remove bundle %s: %s", name, e.getMessage()), e);
         }
-        return true;
+        return removed;
+    }
+
+    /**
+     * Get the directory, beneath the build directory, that the plugin keeps its own state in.
+     * @return The plugin work directory.
+     */
+    File getWorkDirectory() {
+        return new File(projectBuildDirectory + File.separator + "resource-bundler");
     }
 
     /**
-     * Filter out any excluded directories and files.
-     * @param listFiles The top-level files which may contain files and excluded directories.
-     * @return The filtered list of files.
+     * Get the build context. When the plugin is run outside of Maven, and so nothing was injected, this is
+     * resolved once, on the calling thread, so that it can safely be shared with the worker threads used
+     * when bundling in parallel.
+     * @return The build context.
      */
-    private List<File> filterExcludedDirectories(final File[] listFiles) {
-        if (excludedDirectories == null || excludedDirectories.length() == 0) {
-            return Arrays.asList(listFiles);
+    private BuildContext getBuildContext() {
+        if (buildContext == null) {
+            buildContext = getContext();
         }
+        return buildContext;
+    }
 
-        final String suffix = excludedDirectories.length() > 1 ? "ies" : "y";
-        getLog().info(format("Ignoring top-level director%s '%s'.", suffix, excludedDirectories));
+    /**
+     * Create the minifiers shared by every bundle, unless they have already been created, with the engine
+     * chosen for every file extension.
+     * @throws MojoExecutionException If an engine could not be found or a minifier could not be created.
+     */
+    private void createMinifiers() throws MojoExecutionException {
+        if (extensionMinifiers != null) {
+            return;
+        }
+        final Map<FileExtension, StreamMinifier> created = new LinkedHashMap<>();
+        try {
+            final Map<String, String> options = new LinkedHashMap<>();
+            options.put("jsLineBreak", String.valueOf(jsLineBreak));
+            options.put("jsMunge", String.valueOf(jsMunge));
+            options.put("jsPreserveSemicolons", String.valueOf(jsPreserveSemicolons));
+            options.put("jsDisableOptimizations", String.valueOf(jsDisableOptimizations));
+            options.putAll(MinifierEngines.pairs(minifierOptions));
 
-        final String[] split = excludedDirectories.split(",");
-        final List<String> names = Arrays.asList(split);
-        final List<File> files = new ArrayList<>();
-        for (int i = 0, j = listFiles.length; i < j; i++) {
-            final File file = listFiles[i];
-            final String name = file.getName();
-            if (!names.contains(name)) {
-                files.add(file);
+            final Map<String, MinifierEngine> engines = MinifierEngines.load(Main.class.getClassLoader());
+            final Map<FileExtension, String> defaults = MinifierEngines.select(null);
+            for (Map.Entry<FileExtension, String> selected : MinifierEngines.select(minifiers).entrySet()) {
+                final FileExtension extension = selected.getKey();
+                final MinifierEngines.Context context = new MinifierEngines.Context(extension.name(), options, getLog(), getBuildContext());
+                created.put(extension, MinifierEngines.create(engines, selected.getValue(), context));
+                if (!selected.getValue().equals(defaults.get(extension))) {
+                    getLog().info(format("Minifying '%s' files with the '%s' minifier engine.", extension.name(), selected.getValue()));
+                }
             }
+        } catch (IllegalArgumentException | IllegalStateException | IOException e) {
+            throw new MojoExecutionException("Failed to create minifiers: " + e.getMessage(), e);
         }
-        return files;
+        extensionMinifiers = created;
     }
 
     /**
-     * Delete the files at the given absolute path.
-     * @param absolutePath The absolute path to directory you wish to delete files from.
+     * Get the minifier for the given file extension.
+     * @param extension The file extension.
+     * @return The minifier.
      */
-    private void deleteFile(final String absolutePath) {
-        final String destinationBasePath = projectBuildDirectory + File.separator + toPath;
-        final String destinationFileAbsolutePath = absolutePath.replace(projectResourcesDirectory + File.separator + fromPath, destinationBasePath);
-        getLog().info("Deleting file: " + destinationFileAbsolutePath);
-        final File fileToDelete = new File(destinationFileAbsolutePath);
-        boolean deleted = fileToDelete.delete();
-        if (!deleted) {
-            getLog().error("Failed to delete file: " + destinationFileAbsolutePath);
-        }
-        recursivelyDeleteEmptyDirectories(fileToDelete.getParent(), destinationBasePath);
+    private StreamMinifier getMinifier(final FileExtension extension) {
+        return extensionMinifiers.get(extension);
     }
 
     /**
-     * If only copy across the bundle files then this method will attempt to delete empty parent directories of the
-     * file that was deleted.
-     * @param destinationPath The path to the directory the file resides in, and any parent directory there after.
-     * @param destinationBasePath The base target directory. This directory and its parents should not be deleted.
+     * Put the files of a bundle into import order, adding the files they import, when <em>CSS</em> imports
+     * are inlined.
+     * @param extension The file extension.
+     * @param files The files of the bundle, or null.
+     * @return The files to bundle.
+     * @throws UncheckedIOException If a file could not be read.
      */
-    private void recursivelyDeleteEmptyDirectories(final String destinationPath, final String destinationBasePath) {
-        if (destinationPath == null || destinationPath.length() == 0) {
-            return;
+    private List<File> inlineImports(final FileExtension extension, final List<File> files) {
+        if (extension != css || !inlineCssImports || files == null) {
+            return files;
         }
-
-        if (destinationPath.equals(destinationBasePath)) {
-            return;
+        try {
+            return CssImportResolver.resolve(files, getSourceDirectory(), getLog());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
 
-        final File file = new File(destinationPath);
-        if (!file.exists()) {
-            return;
-        }
+    /**
+     * Check whether the <em>CSS</em> files of one top-level directory may import those of another, so that a
+     * change to any <em>CSS</em> file may change any bundle.
+     * @return True if <em>CSS</em> imports are inlined.
+     */
+    boolean inlinesCssImports() {
+        return inlineCssImports;
+    }
 
-        if (file.isDirectory()) {
-            if (file.listFiles().length > 0) {
-                return;
-            }
-            file.delete();
-        }
-        recursivelyDeleteEmptyDirectories(file.getParent(), destinationBasePath);
+    /**
+     * Check whether <em>CSS</em> bundles depend on the images and fonts they reference, which may be beneath
+     * any top-level directory.
+     * @return True if <em>CSS</em> assets are inlined.
+     */
+    boolean inlinesCssAssets() {
+        return inlineCssAssets;
     }
 
     /**
-     * Creates a single file, for each of the top-level directories. This file will
-     * contain the contents of all child files of the given extension. This contents
-     * will minified.
-     * @param bundleName The name of the bundle.
-     * @param extension The extension.
-     * @param files The child files that will be minified and concatenated into the bundle file.
-     * @return The resulting bundle file.
+     * Get the extensions of the files to bundle.
+     * @return The file extensions, in the order their bundles are created.
      */
-    File createBundle(String bundleName, FileExtension extension, List<File> files) {
-        if (files.isEmpty()) {
-            return null;
+    Collection<FileExtension> getExtensions() {
+        return extensionMinifiers.keySet();
+    }
+
+    /**
+     * A single unit of bundling work: the files with a given extension beneath a top-level directory.
+     */
+    private final class BundleTask implements Callable<File> {
+
+        private final String name;
+        private final File directory;
+        private final FileExtension extension;
+        private final List<File> files;
+
+        /**
+         * The other copies of the files, which the bundle replaces but which are not bundled themselves.
+         */
+        private final List<File> copies = new ArrayList<>();
+        private File bundle;
+
+        /**
+         * @param name The name of the bundle.
+         * @param directory The top-level directory the files are from, or null for the common bundle.
+         * @param extension The file extension.
+         * @param files The files to bundle.
+         */
+        BundleTask(final String name, final File directory, final FileExtension extension, final List<File> files) {
+            this.name = name;
+            this.directory = directory;
+            this.extension = extension;
+            this.files = files;
         }
 
-        final String name = bundleName + "-bundle" + "." + extension.name();
-        getLog().info(format("Found the following %s file(s) that will be minified and bundled into file '%s':", files.size(), name));
-        final StringBuilder buffer = new StringBuilder();
-        for (int i = 0, j = files.size(); i < j; i++) {
-            final File file = files.get(i);
-            try {
-                final String content = getFileAsString(file);
-                final Minifier minifier = extension == FileExtension.js ? new JavascriptMinifier(getLog(), getContext()) : new CssMinifier();
-                buffer.append(minifier.minify(content));
-                getLog().info(i+1 + ". " + file.getAbsolutePath());
+        @Override
+        public File call() {
+            if (files != null && !files.isEmpty()) {
+                bundle = createBundle(name, extension, files);
+            }
+            return bundle;
+        }
 
-            } catch (IOException e) {
-                getLog().error(format("Failed to read file: %s", file.getAbsolutePath()));
+        /**
+         * Add the resulting bundle, if one was created, to the given map of bundles, and record the files
+         * it was created from.
+         * @param bundles The map of bundle file to the files it replaces.
+         */
+        void addTo(final Map<File, List<File>> bundles) {
+            if (bundle != null) {
+                final List<File> replaced = new ArrayList<>(files);
+                replaced.addAll(copies);
+                bundles.put(bundle, replaced);
+
+                final Path source = getSourceDirectory().getAbsoluteFile().toPath();
+                final List<String> paths = new ArrayList<>(files.size());
+                for (File file : files) {
+                    paths.add(source.relativize(file.getAbsoluteFile().toPath()).toString().replace(File.separatorChar, '/'));
+                }
+                contributors.put(bundle, paths);
             }
         }
 
-        if (buffer.length() == 0) {
-            return null;
+        @Override
+        public String toString() {
+            return name + "-bundle." + extension.name();
         }
+    }
 
-        final String absolutePath = projectResourcesDirectory + File.separator + fromPath + File.separator + name;
-        final File bundle = new File(absolutePath);
-        try {
-            FileUtils.writeStringToFile(bundle, buffer.toString(), UTF_8);
-            return bundle;
-        } catch (IOException e) {
-            getLog().error("Failed to write contents to file: " + absolutePath);
-            return null;
+    /**
+     * The minified contents of a file, along with the size and last modified time of the file they were
+     * minified from, and the cache key of the minifier they were minified with.
+     */
+    private static final class Minified {
+
+        private final long size;
+        private final long lastModified;
+        private final String minifier;
+        private String contents;
+
+        Minified(final File file, final StreamMinifier minifier) {
+            this.size = file.length();
+            this.lastModified = file.lastModified();
+            this.minifier = minifier.getCacheKey();
+        }
+
+        boolean isCurrent(final File file, final StreamMinifier minifier) {
+            return contents != null && file.length() == size && file.lastModified() == lastModified
+                    && this.minifier.equals(minifier.getCacheKey());
         }
     }
 
@@ -401,37 +2179,14 @@ public class Main extends AbstractMojo {
     }
 
     /**
-     * Using depth-first, recursively collects files with the given extension.
-     * @param directory The top-level directory to drill-down from.
-     * @param extension The file extension.
-     * @param result The collection of files that were identified.
-     * @return The collection of files that were identified.
+     * Open a reader over the contents of the file. Malformed input is replaced rather than rejected,
+     * in the same way as {@link #getFileAsString(File)}.
+     * @param file The file.
+     * @return The reader. The caller must close it.
+     * @throws IOException If the file could not be opened.
      */
-    List<File> collectFiles(final File directory, final FileExtension extension, final List<File> result) {
-        if (directory == null) {
-            return result;
-        }
-
-        final File[] files = directory.listFiles();
-        if (files == null) {
-            return result;
-        }
-
-        if (files.length == 0) {
-            return result;
-        }
-
-        for (File f : files) {
-            if (f.isDirectory()) {
-                collectFiles(f, extension, result);
-            } else {
-                final String fileExtension = getFileExtension(f.getName());
-                if (extension.name().equals(fileExtension)) {
-                    result.add(f);
-                }
-            }
-        }
-        return result;
+    Reader newReader(final File file) throws IOException {
+        return new InputStreamReader(Files.newInputStream(file.toPath()), UTF_8);
     }
 
     /**
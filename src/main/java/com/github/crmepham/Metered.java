@@ -0,0 +1,86 @@
+package com.github.crmepham;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.io.output.ProxyOutputStream;
+
+/**
+ * Streams that record the number of bytes passed through them and the time spent doing so, for the build report.
+ *
+ * @author Christopher Mepham
+ */
+final class Metered {
+
+    private Metered() {
+    }
+
+    /**
+     * Records the bytes read from, and the time spent reading, the underlying stream.
+     */
+    static final class Input extends ProxyInputStream {
+
+        private long bytes;
+        private long nanos;
+        private long start;
+
+        Input(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        protected void beforeRead(final int n) {
+            start = System.nanoTime();
+        }
+
+        @Override
+        protected void afterRead(final int n) {
+            nanos += System.nanoTime() - start;
+            if (n > 0) {
+                bytes += n;
+            }
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        long getNanos() {
+            return nanos;
+        }
+    }
+
+    /**
+     * Records the bytes written to, and the time spent writing, the underlying stream.
+     */
+    static final class Output extends ProxyOutputStream {
+
+        private long bytes;
+        private long nanos;
+        private long start;
+
+        Output(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        protected void beforeWrite(final int n) {
+            start = System.nanoTime();
+        }
+
+        @Override
+        protected void afterWrite(final int n) {
+            nanos += System.nanoTime() - start;
+            bytes += n;
+        }
+
+        long getBytes() {
+            return bytes;
+        }
+
+        long getNanos() {
+            return nanos;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.github.crmepham;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * <p>A disk-backed cache of minified file contents.</p>
+ *
+ * <p>
+ *     Entries are keyed by the hash of the original contents together with the minifier and its
+ *     options, so a file only needs to be minified again when it, or the way it is minified, changes.
+ *     Entries are written to a temporary file and then atomically moved into place, which means
+ *     several builds can safely share the same cache directory. When the cache grows beyond its
+ *     maximum size the least recently used entries are evicted.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class MinificationCache {
+
+    /**
+     * Changing the cache format must change this version, so that old entries are never read.
+     */
+    private static final String VERSION = "1";
+
+    private static final String SUFFIX = ".min";
+
+    /**
+     * The caches opened by every execution of the plugin in this JVM, by directory and maximum size.
+     */
+    private static final ConcurrentMap<String, MinificationCache> OPEN = new ConcurrentHashMap<>();
+
+    private final File directory;
+    private final long maxSize;
+    private long size = -1;
+
+    MinificationCache(final File directory, final long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the cache kept in the given directory. Executions of the plugin that run concurrently in the same
+     * JVM, such as the modules of a parallel build, share a single cache for each directory, so that its size
+     * is tracked and its entries are evicted in one place.
+     * @param directory The cache directory.
+     * @param maxSize The maximum size of the cache in bytes.
+     * @return The cache.
+     */
+    static MinificationCache open(final File directory, final long maxSize) {
+        final File absolute = directory.getAbsoluteFile();
+        return OPEN.computeIfAbsent(absolute.toPath().normalize() + "\0" + maxSize, k -> new MinificationCache(absolute, maxSize));
+    }
+
+    /**
+     * Get the cache key for the contents of the given file when minified by the given minifier.
+     * @param minifier The minifier.
+     * @param file The file to minify.
+     * @return The cache key.
+     * @throws IOException If the file could not be read.
+     */
+    static String key(final StreamMinifier minifier, final File file) throws IOException {
+        final MessageDigest digest = ContentHash.newDigest();
+        digest.update((VERSION + '\0' + minifier.getCacheKey() + '\0').getBytes(UTF_8));
+        final byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return ContentHash.toHex(digest.digest());
+    }
+
+    /**
+     * Copy the minified contents for the given key to the writer. A hit marks the entry as recently used.
+     * @param key The cache key.
+     * @param out The writer to copy the minified contents to.
+     * @return True if the cache contained the key, otherwise false and nothing was written.
+     * @throws IOException If the minified contents could not be written.
+     */
+    boolean copyTo(final String key, final Writer out) throws IOException {
+        final Path path = entry(key);
+        final Reader in;
+        try {
+            in = new InputStreamReader(Files.newInputStream(path), UTF_8);
+        } catch (IOException e) {
+            return false;
+        }
+        try {
+            IOUtils.copy(in, out);
+        } finally {
+            in.close();
+        }
+        path.toFile().setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * Open a writer that passes everything written to it on to the given writer, while also recording
+     * it as the minified contents for the given key. The entry is only added to the cache once
+     * {@link EntryWriter#commit()} is called.
+     * @param key The cache key.
+     * @param out The writer to pass the minified contents on to.
+     * @return The entry writer.
+     * @throws IOException If the entry could not be created.
+     */
+    EntryWriter open(final String key, final Writer out) throws IOException {
+        Files.createDirectories(directory.toPath());
+        final Path temp = directory.toPath().resolve(key + "." + UUID.randomUUID() + ".tmp");
+        return new EntryWriter(key, temp, out);
+    }
+
+    /**
+     * Record that an entry of the given size was added, evicting the least recently used entries if
+     * the cache has grown beyond its maximum size.
+     */
+    private synchronized void added(final long length) {
+        if (size < 0) {
+            size = measure();
+        } else {
+            size += length;
+        }
+        if (size > maxSize) {
+            evict();
+        }
+    }
+
+    private Path entry(final String key) {
+        return directory.toPath().resolve(key + SUFFIX);
+    }
+
+    private File[] entries() {
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        return files == null ? new File[0] : files;
+    }
+
+    private long measure() {
+        long total = 0;
+        for (File file : entries()) {
+            total += file.length();
+        }
+        return total;
+    }
+
+    /**
+     * Delete the least recently used entries until the cache is back under its maximum size. Entries
+     * may be shared with, and deleted or used by, other builds, so the size is measured again first, and
+     * the entries are sorted by the times they were last used when listed, rather than as they change.
+     */
+    private void evict() {
+        final List<File> files = new ArrayList<>(Arrays.asList(entries()));
+        final Map<File, Long> used = new HashMap<>();
+        for (File file : files) {
+            used.put(file, file.lastModified());
+        }
+        files.sort(Comparator.comparing(used::get));
+        size = measure();
+        for (int i = 0; size > maxSize && i < files.size(); i++) {
+            final File file = files.get(i);
+            final long length = file.length();
+            if (file.delete()) {
+                size -= length;
+            }
+        }
+    }
+
+    /**
+     * Writes minified contents to both the bundle and a new cache entry.
+     */
+    final class EntryWriter extends Writer {
+
+        private final String key;
+        private final Path temp;
+        private final Writer out;
+        private final Writer entry;
+
+        private EntryWriter(final String key, final Path temp, final Writer out) throws IOException {
+            this.key = key;
+            this.temp = temp;
+            this.out = out;
+            this.entry = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp), UTF_8));
+        }
+
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) throws IOException {
+            out.write(buffer, offset, length);
+            entry.write(buffer, offset, length);
+        }
+
+        @Override
+        public void write(final String value, final int offset, final int length) throws IOException {
+            out.write(value, offset, length);
+            entry.write(value, offset, length);
+        }
+
+        @Override
+        public void write(final int c) throws IOException {
+            out.write(c);
+            entry.write(c);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+            entry.flush();
+        }
+
+        /**
+         * Atomically add the entry to the cache. Entries larger than the cache itself are discarded.
+         * @throws IOException If the entry could not be written.
+         */
+        void commit() throws IOException {
+            entry.close();
+            final long length = Files.size(temp);
+            if (length > maxSize) {
+                Files.deleteIfExists(temp);
+                return;
+            }
+            AtomicFiles.move(temp, entry(key));
+            added(length);
+        }
+
+        /**
+         * Discard the entry, leaving the cache unchanged.
+         */
+        void abort() {
+            try {
+                entry.close();
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                temp.toFile().deleteOnExit();
+            }
+        }
+
+        /**
+         * Closing an entry writer discards the entry unless it was committed. The underlying writer is never closed.
+         */
+        @Override
+        public void close() {
+            abort();
+        }
+    }
+}
@@ -3,30 +3,26 @@ package com.github.crmepham;
 import java.io.IOException;
 
 /**
- * Contains static method that will perform minification of supplied file contents.
+ * The base of the built-in minifiers, which can also minify a whole file held in memory.
  *
  * @author Christopher Mepham
  */
-abstract class Minifier {
+abstract class Minifier implements StreamMinifier {
 
     /**
-     * Line terminator characters are characters that can safely be removed during minification.
-     */
-    String[] WHITESPACE_CHARACTERS = new String[] {"\n", "\t", "\r", "\f"};
-
-    /**
-     * Minifies the given file contents based on the file extension.
+     * Minifies the given file contents.
      * @param input The file contents as a String.
      * @return The minified file contents.
      */
-    String minify(String input) throws IOException {
+    abstract String minify(String input) throws IOException;
 
-        // Remove line terminator characters.
-        for (int i = 0, j = WHITESPACE_CHARACTERS.length; i < j; i++) {
-            input = input.replace(WHITESPACE_CHARACTERS[i], "");
-        }
-
-        // Remove all block comments.
-        return input.replaceAll("(\\/\\*.+?\\*\\/)", "");
+    /**
+     * Identifies this minifier and any options that affect its output. Two minifiers with the same
+     * cache key must produce the same output for the same input.
+     * @return The cache key.
+     */
+    @Override
+    public String getCacheKey() {
+        return getClass().getSimpleName();
     }
 }
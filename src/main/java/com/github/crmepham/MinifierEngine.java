@@ -0,0 +1,77 @@
+package com.github.crmepham;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.maven.plugin.logging.Log;
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+/**
+ * <p>A minifier engine, which creates the minifiers for one or more file extensions.</p>
+ *
+ * <p>
+ *     Engines are discovered with {@link java.util.ServiceLoader}, so an engine is added by listing its class
+ *     name in <em>META-INF/services/com.github.crmepham.MinifierEngine</em> of a jar that is added to the
+ *     dependencies of the plugin. The engine that minifies each file extension is chosen by name with the
+ *     <em>minifiers</em> property, for example <em>js=my-engine</em>, which also adds new file extensions to
+ *     bundle, such as <em>mjs=my-engine</em>. The plugin has the following engines built in:
+ * </p>
+ *
+ * <ul>
+ *     <li><em>yui</em>: minifies <em>Javascript</em> with the YUI compressor. The default for <em>js</em>.</li>
+ *     <li><em>builtin</em>: minifies <em>CSS</em> in a single pass. The default for <em>css</em>.</li>
+ *     <li><em>none</em>: copies files of any extension as they are.</li>
+ * </ul>
+ *
+ * @author Christopher Mepham
+ */
+public interface MinifierEngine {
+
+    /**
+     * Get the name the engine is chosen by.
+     * @return The name, which must be unique.
+     */
+    String getName();
+
+    /**
+     * Check whether this engine can minify files with the given extension.
+     * @param extension The file extension, without the dot, such as <em>js</em>.
+     * @return True if the engine supports the extension.
+     */
+    boolean supports(String extension);
+
+    /**
+     * Create the minifier for every file with a given extension during a single build.
+     * @param context The file extension and the configuration of the build.
+     * @return The minifier, which must be thread safe.
+     * @throws IOException If the minifier could not be created.
+     */
+    StreamMinifier create(Context context) throws IOException;
+
+    /**
+     * The file extension a minifier is created for, and the configuration of the build.
+     */
+    interface Context {
+
+        /**
+         * @return The file extension, without the dot.
+         */
+        String getExtension();
+
+        /**
+         * @return The minifier options, such as <em>jsLineBreak</em>, along with any given with the
+         *         <em>minifierOptions</em> property.
+         */
+        Map<String, String> getOptions();
+
+        /**
+         * @return The log to report problems to.
+         */
+        Log getLog();
+
+        /**
+         * @return The build context to report problems with particular files to.
+         */
+        BuildContext getBuildContext();
+    }
+}
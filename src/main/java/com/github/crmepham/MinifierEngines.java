@@ -0,0 +1,246 @@
+package com.github.crmepham;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.maven.plugin.logging.Log;
+import org.sonatype.plexus.build.incremental.BuildContext;
+
+/**
+ * <p>Finds the minifier engines, and creates the minifier chosen for every file extension.</p>
+ *
+ * <p>
+ *     The built-in engines come first, followed by every engine found with {@link ServiceLoader}. The engine
+ *     for each extension is chosen with a comma-separated list of <em>extension=engine</em> pairs, which are
+ *     added to the defaults of <em>js=yui</em> and <em>css=builtin</em>. The cache key of every minifier starts
+ *     with the name of its engine, so the results of different engines are never mixed up in the caches.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class MinifierEngines {
+
+    private MinifierEngines() {
+    }
+
+    /**
+     * Find every minifier engine.
+     * @param loader The class loader to look for engines with.
+     * @return The engines, by name.
+     * @throws IllegalStateException If an engine could not be loaded, or two engines have the same name.
+     */
+    static Map<String, MinifierEngine> load(final ClassLoader loader) {
+        final Map<String, MinifierEngine> engines = new LinkedHashMap<>();
+        add(engines, new Yui());
+        add(engines, new Builtin());
+        add(engines, new None());
+        try {
+            for (MinifierEngine engine : ServiceLoader.load(MinifierEngine.class, loader)) {
+                add(engines, engine);
+            }
+        } catch (ServiceConfigurationError e) {
+            throw new IllegalStateException("Failed to load minifier engine: " + e.getMessage(), e);
+        }
+        return engines;
+    }
+
+    private static void add(final Map<String, MinifierEngine> engines, final MinifierEngine engine) {
+        final MinifierEngine existing = engines.putIfAbsent(engine.getName(), engine);
+        if (existing != null) {
+            throw new IllegalStateException(String.format("Minifier engines %s and %s are both named '%s'.",
+                    existing.getClass().getName(), engine.getClass().getName(), engine.getName()));
+        }
+    }
+
+    /**
+     * Get the engine chosen for every file extension.
+     * @param selection A comma-separated list of <em>extension=engine</em> pairs, or null.
+     * @return The engine names, by file extension, starting with the defaults.
+     * @throws IllegalArgumentException If a pair or extension is invalid.
+     */
+    static Map<FileExtension, String> select(final String selection) {
+        final Map<FileExtension, String> selected = new LinkedHashMap<>();
+        selected.put(FileExtension.js, "yui");
+        selected.put(FileExtension.css, "builtin");
+        for (Map.Entry<String, String> pair : pairs(selection).entrySet()) {
+            selected.put(FileExtension.of(pair.getKey()), pair.getValue());
+        }
+        return selected;
+    }
+
+    /**
+     * Parse a comma-separated list of <em>key=value</em> pairs.
+     * @param list The list, or null.
+     * @return The values, by key, in the order given.
+     * @throws IllegalArgumentException If a pair has no key or value.
+     */
+    static Map<String, String> pairs(final String list) {
+        final Map<String, String> pairs = new LinkedHashMap<>();
+        if (list == null || list.trim().isEmpty()) {
+            return pairs;
+        }
+        for (String pair : list.split(",")) {
+            final int equals = pair.indexOf('=');
+            if (equals <= 0 || equals == pair.length() - 1) {
+                throw new IllegalArgumentException("Expected key=value but was: " + pair.trim());
+            }
+            pairs.put(pair.substring(0, equals).trim(), pair.substring(equals + 1).trim());
+        }
+        return pairs;
+    }
+
+    /**
+     * Create the minifier for a file extension.
+     * @param engines Every engine, by name.
+     * @param name The name of the engine chosen for the extension.
+     * @param context The file extension and the configuration of the build.
+     * @return The minifier.
+     * @throws IllegalArgumentException If the engine does not exist or does not support the extension.
+     * @throws IOException If the minifier could not be created.
+     */
+    static StreamMinifier create(final Map<String, MinifierEngine> engines, final String name, final MinifierEngine.Context context) throws IOException {
+        final MinifierEngine engine = engines.get(name);
+        if (engine == null) {
+            throw new IllegalArgumentException(String.format("No minifier engine named '%s' for extension '%s'. Available engines: %s",
+                    name, context.getExtension(), engines.keySet()));
+        }
+        if (!engine.supports(context.getExtension())) {
+            throw new IllegalArgumentException(String.format("Minifier engine '%s' does not support extension '%s'.", name, context.getExtension()));
+        }
+        final StreamMinifier minifier = engine.create(context);
+        return new StreamMinifier() {
+            @Override
+            public void minify(final Reader in, final Writer out) throws IOException {
+                minifier.minify(in, out);
+            }
+
+            @Override
+            public String getCacheKey() {
+                return name + ":" + minifier.getCacheKey();
+            }
+        };
+    }
+
+    /**
+     * The minifier configuration of a single file extension.
+     */
+    static final class Context implements MinifierEngine.Context {
+
+        private final String extension;
+        private final Map<String, String> options;
+        private final Log log;
+        private final BuildContext buildContext;
+
+        Context(final String extension, final Map<String, String> options, final Log log, final BuildContext buildContext) {
+            this.extension = extension;
+            this.options = Collections.unmodifiableMap(options);
+            this.log = log;
+            this.buildContext = buildContext;
+        }
+
+        @Override
+        public String getExtension() {
+            return extension;
+        }
+
+        @Override
+        public Map<String, String> getOptions() {
+            return options;
+        }
+
+        @Override
+        public Log getLog() {
+            return log;
+        }
+
+        @Override
+        public BuildContext getBuildContext() {
+            return buildContext;
+        }
+    }
+
+    /**
+     * Minifies <em>Javascript</em> with the YUI compressor.
+     */
+    private static final class Yui implements MinifierEngine {
+
+        @Override
+        public String getName() {
+            return "yui";
+        }
+
+        @Override
+        public boolean supports(final String extension) {
+            return "js".equals(extension);
+        }
+
+        @Override
+        public StreamMinifier create(final Context context) {
+            final Map<String, String> options = context.getOptions();
+            return new JavascriptMinifier(context.getLog(), context.getBuildContext(),
+                    Integer.parseInt(options.getOrDefault("jsLineBreak", "1")),
+                    Boolean.parseBoolean(options.get("jsMunge")),
+                    Boolean.parseBoolean(options.get("jsPreserveSemicolons")),
+                    Boolean.parseBoolean(options.get("jsDisableOptimizations")));
+        }
+    }
+
+    /**
+     * Minifies <em>CSS</em> with the built-in single pass minifier.
+     */
+    private static final class Builtin implements MinifierEngine {
+
+        @Override
+        public String getName() {
+            return "builtin";
+        }
+
+        @Override
+        public boolean supports(final String extension) {
+            return "css".equals(extension);
+        }
+
+        @Override
+        public StreamMinifier create(final Context context) {
+            return new CssMinifier();
+        }
+    }
+
+    /**
+     * Copies files of any extension as they are.
+     */
+    private static final class None implements MinifierEngine {
+
+        @Override
+        public String getName() {
+            return "none";
+        }
+
+        @Override
+        public boolean supports(final String extension) {
+            return true;
+        }
+
+        @Override
+        public StreamMinifier create(final Context context) {
+            return new StreamMinifier() {
+                @Override
+                public void minify(final Reader in, final Writer out) throws IOException {
+                    IOUtils.copy(in, out);
+                }
+
+                @Override
+                public String getCacheKey() {
+                    return "1";
+                }
+            };
+        }
+    }
+}
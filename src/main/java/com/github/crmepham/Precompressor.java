@@ -0,0 +1,143 @@
+package com.github.crmepham;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * <p>Writes a precompressed <em>.gz</em> sidecar next to every bundle in the target directory.</p>
+ *
+ * <p>
+ *     Web servers can then serve the sidecar as it is, rather than compressing the bundle on every
+ *     request. Bundles are compressed concurrently. For every sidecar the hash of the bundle it was
+ *     compressed from, and the compression level, are recorded, and a sidecar is only written again
+ *     once either of them changes. The hash computed while the bundle was written is used where it is
+ *     known, so an unchanged bundle is not read again just to find out that it has not changed.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class Precompressor {
+
+    private static final Gson GSON = new Gson();
+
+    private final Log log;
+    private final File records;
+    private final int level;
+    private final Map<String, String> compressed = new ConcurrentHashMap<>();
+
+    /**
+     * @param log The log.
+     * @param records The file to record the hash each sidecar was compressed from in.
+     * @param level The gzip compression level, from 1 (fastest) to 9 (smallest).
+     */
+    Precompressor(final Log log, final File records, final int level) {
+        this.log = log;
+        this.records = records;
+        this.level = level;
+        if (records.isFile()) {
+            try {
+                final Map<String, String> previous = GSON.fromJson(FileUtils.readFileToString(records, UTF_8), new TypeToken<Map<String, String>>(){}.getType());
+                if (previous != null) {
+                    compressed.putAll(previous);
+                }
+            } catch (IOException | JsonParseException e) {
+                log.debug("Ignoring unreadable sidecar records: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Write the sidecars of the given bundles, skipping those that are already up to date.
+     * @param hashes The bundle files in the target directory, with the content hash of each, or null
+     *               where it is not known and must be computed.
+     * @param threads The number of threads to compress on.
+     * @throws IOException If any of the sidecars could not be written.
+     */
+    void compress(final Map<File, String> hashes, final int threads) throws IOException {
+        final List<File> bundles = new ArrayList<>(hashes.keySet());
+        final ExecutorService executor = Workers.newPool("resource-bundler-compress", Math.min(threads, bundles.size()));
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (File bundle : bundles) {
+                final String hash = hashes.get(bundle);
+                futures.add(executor.submit(() -> {
+                    gzip(bundle, hash);
+                    return null;
+                }));
+            }
+
+            final List<String> errors = new ArrayList<>();
+            for (int i = 0, j = bundles.size(); i < j; i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    errors.add(format("%s (%s)", bundles.get(i).getName(), e.getCause().getMessage()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while compressing: " + bundles.get(i).getName());
+                }
+            }
+            if (!errors.isEmpty()) {
+                throw new IOException("Failed to compress: " + String.join(", ", errors));
+            }
+        } finally {
+            executor.shutdownNow();
+            FileUtils.writeStringToFile(records, GSON.toJson(new TreeMap<>(compressed)), UTF_8);
+        }
+    }
+
+    private void gzip(final File bundle, final String hash) throws IOException {
+        final File sidecar = new File(bundle.getPath() + ".gz");
+        final String source = (hash != null ? hash : ContentHash.of(bundle)) + ":" + level;
+        if (sidecar.isFile() && source.equals(compressed.get(sidecar.getAbsolutePath()))) {
+            log.info(format("Skipping compression of '%s'. It has not changed.", bundle.getName()));
+            return;
+        }
+
+        final Path temp = sidecar.toPath().resolveSibling(sidecar.getName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            try (OutputStream out = new LevelGZIPOutputStream(Files.newOutputStream(temp), level)) {
+                Files.copy(bundle.toPath(), out);
+            }
+            AtomicFiles.move(temp, sidecar.toPath());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        compressed.put(sidecar.getAbsolutePath(), source);
+        log.info(format("Compressed '%s' from %s to %s byte(s).", bundle.getName(), bundle.length(), sidecar.length()));
+    }
+
+    /**
+     * A gzip stream with a configurable compression level.
+     */
+    static final class LevelGZIPOutputStream extends GZIPOutputStream {
+
+        LevelGZIPOutputStream(final OutputStream out, final int level) throws IOException {
+            super(out, 65536);
+            def.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.github.crmepham;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>Finds the <em>Javascript</em>, <em>CSS</em> and other files to bundle beneath the source directory.</p>
+ *
+ * <p>
+ *     The source directory is walked once, and every file is sorted by its top-level directory and
+ *     extension, without a separate call to check whether each entry is a directory. Files directly in the
+ *     source directory are never bundled. Include and exclude rules are glob patterns, such as
+ *     <em>app/**&#47;*.js</em>, matched against the path relative to the source directory. A file is
+ *     bundled if it matches any include, or there are none, and it matches no exclude. A directory that
+ *     matches an exclude, such as <em>**&#47;vendor</em>, is not walked at all. Every <em>**&#47;</em>
+ *     also matches no directories at all, as it does in Maven and Ant, so <em>**&#47;vendor</em> matches a
+ *     top-level <em>vendor</em> directory as well, and <em>app/**&#47;*.js</em> matches the files directly
+ *     beneath <em>app</em>. The files of every bundle are sorted by their relative path, so the bundle
+ *     contents do not depend on the order the file system lists them in.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class ResourceScanner {
+
+    private final Collection<FileExtension> extensions;
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+
+    /**
+     * @param extensions The extensions of the files to bundle, in the order their bundles are created.
+     * @param includes The include glob patterns. None means every file is included.
+     * @param excludes The exclude glob patterns.
+     */
+    ResourceScanner(final Collection<FileExtension> extensions, final Collection<String> includes, final Collection<String> excludes) {
+        this.extensions = extensions;
+        this.includes = matchers(includes);
+        this.excludes = matchers(excludes);
+    }
+
+    /**
+     * Find the files to bundle beneath every top-level directory of the source directory.
+     * @param root The source directory.
+     * @return The files of every top-level directory, by extension, in the order of the directory names and
+     *         the given extensions.
+     * @throws IOException If a directory could not be read.
+     */
+    Map<File, Map<FileExtension, List<File>>> scan(final File root) throws IOException {
+        return scan(root.toPath(), root.toPath());
+    }
+
+    /**
+     * Find the files to bundle beneath a single top-level directory of the source directory.
+     * @param root The source directory.
+     * @param directory The top-level directory.
+     * @return The files of the directory, by extension.
+     * @throws IOException If a directory could not be read.
+     */
+    Map<FileExtension, List<File>> scan(final File root, final File directory) throws IOException {
+        final Map<File, Map<FileExtension, List<File>>> files = scan(root.toPath(), directory.toPath());
+        return files.isEmpty() ? new LinkedHashMap<>() : files.values().iterator().next();
+    }
+
+    private Map<File, Map<FileExtension, List<File>>> scan(final Path root, final Path start) throws IOException {
+        final Map<File, Map<FileExtension, List<Path>>> found = new TreeMap<>();
+        if (!Files.isDirectory(start)) {
+            return new TreeMap<>();
+        }
+
+        Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+                if (!dir.equals(root) && matches(excludes, root.relativize(dir))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) {
+                final Path relative = root.relativize(file);
+                if (!attrs.isRegularFile() || relative.getNameCount() < 2) {
+                    return FileVisitResult.CONTINUE;
+                }
+                final FileExtension extension = extensionOf(file.getFileName().toString());
+                if (extension == null
+                        || (!includes.isEmpty() && !matches(includes, relative))
+                        || matches(excludes, relative)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                found.computeIfAbsent(root.resolve(relative.getName(0)).toFile(), d -> new LinkedHashMap<>())
+                        .computeIfAbsent(extension, e -> new ArrayList<>())
+                        .add(relative);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(final Path file, final IOException e) throws IOException {
+                // A file that disappeared during the walk, or a link back to a parent directory, is not bundled.
+                if (e instanceof FileSystemLoopException || Files.notExists(file)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+
+        final Map<File, Map<FileExtension, List<File>>> result = new TreeMap<>();
+        for (Map.Entry<File, Map<FileExtension, List<Path>>> directory : found.entrySet()) {
+            final Map<FileExtension, List<File>> byExtension = new LinkedHashMap<>();
+            for (FileExtension extension : extensions) {
+                final List<Path> paths = directory.getValue().get(extension);
+                if (paths == null) {
+                    continue;
+                }
+                Collections.sort(paths);
+                final List<File> files = new ArrayList<>(paths.size());
+                for (Path path : paths) {
+                    files.add(root.resolve(path).toFile());
+                }
+                byExtension.put(extension, files);
+            }
+            result.put(directory.getKey(), byExtension);
+        }
+        return result;
+    }
+
+    private FileExtension extensionOf(final String name) {
+        for (FileExtension extension : extensions) {
+            if (name.endsWith("." + extension.name())) {
+                return extension;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get a glob pattern that only matches the given name.
+     * @param name The name.
+     * @return The pattern, with any glob syntax in the name escaped.
+     */
+    static String literal(final String name) {
+        final StringBuilder pattern = new StringBuilder(name.length());
+        for (int i = 0, j = name.length(); i < j; i++) {
+            final char c = name.charAt(i);
+            if ("\\*?[]{},".indexOf(c) >= 0) {
+                pattern.append('\\');
+            }
+            pattern.append(c);
+        }
+        return pattern.toString();
+    }
+
+    private static boolean matches(final List<PathMatcher> matchers, final Path relative) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(relative)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<PathMatcher> matchers(final Collection<String> patterns) {
+        final List<PathMatcher> matchers = new ArrayList<>();
+        if (patterns == null) {
+            return matchers;
+        }
+        final FileSystem fileSystem = FileSystems.getDefault();
+        for (String pattern : patterns) {
+            final String trimmed = pattern.trim();
+            if (!trimmed.isEmpty()) {
+                for (String variant : variants(trimmed)) {
+                    matchers.add(fileSystem.getPathMatcher("glob:" + variant));
+                }
+            }
+        }
+        return matchers;
+    }
+
+    /**
+     * Get every form of a glob pattern with each <em>**&#47;</em> segment either kept or left out, since
+     * a glob only matches <em>**&#47;</em> against at least one directory.
+     * @param pattern The pattern.
+     * @return The pattern itself, followed by its other forms.
+     */
+    static List<String> variants(final String pattern) {
+        final List<String> variants = new ArrayList<>();
+        variants.add(pattern);
+        int from = 0;
+        while (true) {
+            final int index = pattern.indexOf("**/", from);
+            if (index < 0) {
+                return variants;
+            }
+            from = index + 3;
+            if (index > 0 && pattern.charAt(index - 1) != '/') {
+                continue;
+            }
+            for (int i = 0, j = variants.size(); i < j; i++) {
+                final String variant = variants.get(i);
+                final int offset = variant.length() - (pattern.length() - index);
+                variants.add(variant.substring(0, offset) + variant.substring(offset + 3));
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.github.crmepham;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Finds the files with identical contents that are bundled into more than one bundle.</p>
+ *
+ * <p>
+ *     Only files whose size matches a file of the same extension under another top-level directory are
+ *     hashed, so that a source tree without shared files is not read in full just to find that out.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+final class SharedInputs {
+
+    private SharedInputs() {
+    }
+
+    /**
+     * Find the files of every extension that have the same contents as a file under another top-level
+     * directory.
+     * @param directories The files of every top-level directory, by extension, as returned by the scanner.
+     * @return The content hash of every shared file, in the order of the top-level directories and their files.
+     * @throws IOException If a file could not be read.
+     */
+    static Map<File, String> find(final Map<File, Map<FileExtension, List<File>>> directories) throws IOException {
+        final Map<File, String> shared = new LinkedHashMap<>();
+        final Set<FileExtension> extensions = new LinkedHashSet<>();
+        for (Map<FileExtension, List<File>> directory : directories.values()) {
+            extensions.addAll(directory.keySet());
+        }
+        for (FileExtension extension : extensions) {
+            final Map<Long, List<Owned>> bySize = new HashMap<>();
+            for (Map.Entry<File, Map<FileExtension, List<File>>> directory : directories.entrySet()) {
+                final List<File> files = directory.getValue().get(extension);
+                if (files == null) {
+                    continue;
+                }
+                for (File file : files) {
+                    bySize.computeIfAbsent(file.length(), s -> new ArrayList<>()).add(new Owned(directory.getKey(), file));
+                }
+            }
+
+            final Map<String, List<Owned>> byHash = new HashMap<>();
+            for (List<Owned> candidates : bySize.values()) {
+                if (spansDirectories(candidates)) {
+                    for (Owned candidate : candidates) {
+                        byHash.computeIfAbsent(ContentHash.of(candidate.file), h -> new ArrayList<>()).add(candidate);
+                    }
+                }
+            }
+
+            final Map<File, String> hashes = new HashMap<>();
+            for (Map.Entry<String, List<Owned>> entry : byHash.entrySet()) {
+                if (spansDirectories(entry.getValue())) {
+                    for (Owned owned : entry.getValue()) {
+                        hashes.put(owned.file, entry.getKey());
+                    }
+                }
+            }
+
+            // Keep the scanner's order, so the results do not depend on hash map iteration order.
+            for (Map<FileExtension, List<File>> directory : directories.values()) {
+                final List<File> files = directory.get(extension);
+                if (files == null) {
+                    continue;
+                }
+                for (File file : files) {
+                    final String hash = hashes.get(file);
+                    if (hash != null) {
+                        shared.put(file, hash);
+                    }
+                }
+            }
+        }
+        return shared;
+    }
+
+    private static boolean spansDirectories(final List<Owned> files) {
+        if (files.size() < 2) {
+            return false;
+        }
+        final Set<File> directories = new HashSet<>();
+        for (Owned owned : files) {
+            directories.add(owned.directory);
+        }
+        return directories.size() > 1;
+    }
+
+    /**
+     * A file and the top-level directory it is bundled from.
+     */
+    private static final class Owned {
+
+        private final File directory;
+        private final File file;
+
+        Owned(final File directory, final File file) {
+            this.directory = directory;
+            this.file = file;
+        }
+    }
+}
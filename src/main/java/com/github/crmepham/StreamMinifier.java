@@ -0,0 +1,37 @@
+package com.github.crmepham;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * <p>Minifies the contents of a single file, reading from a {@link Reader} and writing to a {@link Writer}.</p>
+ *
+ * <p>
+ *     A minifier is created by a {@link MinifierEngine} for a single file extension and build, and is then used
+ *     for every file with that extension, from several threads at once when bundling in parallel, so it must be
+ *     thread safe.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+public interface StreamMinifier {
+
+    /**
+     * Minify the contents of the reader, writing the result to the writer. Neither is closed.
+     * @param in The file contents.
+     * @param out Where to write the minified file contents.
+     * @throws IOException If something went wrong.
+     */
+    void minify(Reader in, Writer out) throws IOException;
+
+    /**
+     * Identify this minifier and any options that affect its output. Two minifiers with the same cache key must
+     * produce the same output for the same input, so the key should change whenever the output does, for example
+     * with the version of the minifier.
+     * @return The cache key.
+     */
+    default String getCacheKey() {
+        return getClass().getName();
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.crmepham;
+
+import static java.lang.String.format;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * <p>Bundles the static <em>Javascript</em> and <em>CSS</em> resources, then watches them and bundles them
+ * again whenever they change, until the build is stopped.</p>
+ *
+ * <p>
+ *     Changes are collected until none have been seen for <em>watchDelay</em> milliseconds, so that saving
+ *     several files at once only bundles them once. Only the bundles of the top-level directories and file
+ *     extensions that changed are created again, and the minified contents of every file are kept in memory,
+ *     so only the files that changed are minified again. Once a top-level directory has no files of an
+ *     extension left, its bundle is removed from the target directory, along with its sidecar and its entry in
+ *     the asset manifest. This goal is meant to be run from the command line during development, with
+ *     <em>mvn resource-bundler:watch</em>.
+ * </p>
+ *
+ * @author Christopher Mepham
+ */
+@Mojo(name = "watch", requiresDirectInvocation = true, threadSafe = true)
+public class Watch extends Main {
+
+    /**
+     * The number of milliseconds without any further changes to wait for before bundling again.
+     */
+    @Parameter(defaultValue = "100", readonly = true)
+    private int watchDelay;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        keepMinifiedInMemory();
+        super.execute();
+
+        final Path root = getSourceDirectory().toPath();
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            final Map<WatchKey, Path> keys = new HashMap<>();
+            register(service, root, keys);
+            getLog().info("Watching for changes in: " + root + ". Press Ctrl+C to stop.");
+            while (true) {
+                final Map<String, Set<FileExtension>> changed = new TreeMap<>();
+                WatchKey key = service.take();
+                while (key != null) {
+                    collect(service, key, keys, root, changed);
+                    key = service.poll(watchDelay, TimeUnit.MILLISECONDS);
+                }
+                rebundle(root, changed);
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Failed to watch directory: " + root, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Register the given directory, and every directory beneath it, with the watch service.
+     */
+    private void register(final WatchService service, final Path directory, final Map<WatchKey, Path> keys) throws IOException {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) throws IOException {
+                keys.put(dir.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Record the top-level directories and file extensions affected by the events of the given key.
+     * Directories that were created are registered, and bundled in full.
+     */
+    private void collect(final WatchService service, final WatchKey key, final Map<WatchKey, Path> keys,
+                         final Path root, final Map<String, Set<FileExtension>> changed) throws IOException {
+        final Path directory = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (directory == null) {
+                continue;
+            }
+            if (event.kind() == OVERFLOW) {
+                // Events were lost, so any bundle may have changed.
+                final File[] files = root.toFile().listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        if (file.isDirectory()) {
+                            changed.put(file.getName(), new LinkedHashSet<>(getExtensions()));
+                        }
+                    }
+                }
+                continue;
+            }
+
+            final Path path = directory.resolve((Path) event.context());
+            final Path relative = root.relativize(path);
+
+            // Files directly in the top-level directory, including the bundles themselves, are not bundled.
+            if (relative.getNameCount() < 2) {
+                if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                    register(service, path, keys);
+                    changed.put(relative.toString(), new LinkedHashSet<>(getExtensions()));
+                } else if (event.kind() == ENTRY_DELETE && getFileExtension(relative.toString()) == null) {
+                    // A deleted top-level directory takes its bundles with it.
+                    changed.put(relative.toString(), new LinkedHashSet<>(getExtensions()));
+                }
+                continue;
+            }
+
+            final String name = relative.getName(0).toString();
+            final Set<FileExtension> extensions = changed.computeIfAbsent(name, n -> new LinkedHashSet<>());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                register(service, path, keys);
+                extensions.addAll(new LinkedHashSet<>(getExtensions()));
+                continue;
+            }
+
+            final String extension = getFileExtension(path.getFileName().toString());
+            if (extension == null) {
+                // A deleted directory, for example, may have held files of either extension.
+                if (event.kind() == ENTRY_DELETE) {
+                    extensions.addAll(new LinkedHashSet<>(getExtensions()));
+                }
+                continue;
+            }
+            boolean bundled = false;
+            for (FileExtension e : getExtensions()) {
+                if (e.name().equals(extension)) {
+                    extensions.add(e);
+                    bundled = true;
+                }
+            }
+            if (!bundled && inlinesCssAssets()) {
+                // Any CSS bundle may have inlined the asset.
+                extensions.add(FileExtension.css);
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+    }
+
+    /**
+     * Bundle the changed top-level directories and file extensions again. A failure is logged rather than
+     * thrown, so that watching continues once the problem has been fixed.
+     */
+    private void rebundle(final Path root, final Map<String, Set<FileExtension>> changed) {
+        if (hasCommonChunk() || (inlinesCssImports() || inlinesCssAssets()) && changed.values().stream().anyMatch(e -> e.contains(FileExtension.css))) {
+            // A change to any file may move it into or out of the common bundle, and a CSS file or asset may be used by any bundle.
+            final long start = System.nanoTime();
+            try {
+                rebundleAll();
+                getLog().info(format("Bundled every directory in %s ms.", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+                for (Map.Entry<String, Set<FileExtension>> entry : changed.entrySet()) {
+                    for (FileExtension extension : entry.getValue()) {
+                        if (!hasFilesToBundle(root.resolve(entry.getKey()).toFile(), extension)) {
+                            remove(entry.getKey(), extension);
+                        }
+                    }
+                }
+            } catch (MojoExecutionException e) {
+                getLog().error(e.getMessage());
+            }
+            return;
+        }
+        for (Map.Entry<String, Set<FileExtension>> entry : changed.entrySet()) {
+            final File directory = root.resolve(entry.getKey()).toFile();
+            for (FileExtension extension : entry.getValue()) {
+                final long start = System.nanoTime();
+                final String name = entry.getKey() + "-bundle." + extension.name();
+                try {
+                    if (directory.isDirectory() && rebundle(directory, extension) != null) {
+                        getLog().info(format("Bundled '%s' in %s ms.", name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+                    } else {
+                        remove(entry.getKey(), extension);
+                    }
+                } catch (MojoExecutionException e) {
+                    getLog().error(e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the bundle of a top-level directory that has no files with the given extension left.
+     */
+    private void remove(final String directory, final FileExtension extension) throws MojoExecutionException {
+        if (!removeBundle(directory, extension)) {
+            getLog().info(format("No files left to bundle into '%s'.", directory + "-bundle." + extension.name()));
+        }
+    }
+}
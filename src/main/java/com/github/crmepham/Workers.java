@@ -0,0 +1,41 @@
+package com.github.crmepham;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the thread pools the plugin runs its concurrent work on.
+ *
+ * @author Christopher Mepham
+ */
+final class Workers {
+
+    private Workers() {
+    }
+
+    /**
+     * Create a fixed size pool of daemon threads, so that an abandoned pool never keeps Maven from exiting.
+     * @param name The prefix of the thread names.
+     * @param size The number of threads.
+     * @return The pool. The caller must shut it down.
+     */
+    static ExecutorService newPool(final String name, final int size) {
+        final AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(Math.max(1, size), r -> {
+            final Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the number of threads to use for the given configured number, where zero or less means one
+     * thread for every available processor.
+     * @param threads The configured number of threads.
+     * @return The number of threads.
+     */
+    static int count(final int threads) {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+}
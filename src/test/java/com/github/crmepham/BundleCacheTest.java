@@ -0,0 +1,38 @@
+package com.github.crmepham;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the keys of {@link BundleCache}.
+ *
+ * @author Christopher Mepham
+ */
+public class BundleCacheTest {
+
+    private static final List<String> HASHES = Arrays.asList("a1", "b2", "c3");
+
+    @Test
+    public void leavesThePathsOutOfTheKeyUnlessTheyAreGiven() {
+        assertThat(BundleCache.key("settings", HASHES, null)).isEqualTo(BundleCache.key("settings", HASHES, null));
+        assertThat(BundleCache.key("settings", HASHES, null))
+                .isNotEqualTo(BundleCache.key("settings", HASHES, Arrays.asList("app/css/a.css", "app/css/b.css", "img/x.png")));
+    }
+
+    @Test
+    public void separatesLayoutsOfTheSameFiles() {
+        assertThat(BundleCache.key("settings", HASHES, Arrays.asList("app/css/a.css", "app/css/b.css", "img/x.png")))
+                .isEqualTo(BundleCache.key("settings", HASHES, Arrays.asList("app/css/a.css", "app/css/b.css", "img/x.png")))
+                .isNotEqualTo(BundleCache.key("settings", HASHES, Arrays.asList("app/a.css", "app/b.css", "img/x.png")))
+                .isNotEqualTo(BundleCache.key("settings", HASHES, Arrays.asList("app/css/a.css", "app/css/b.css", "app/img/x.png")));
+    }
+
+    @Test
+    public void changesWithTheSettings() {
+        assertThat(BundleCache.key("settings", HASHES, null)).isNotEqualTo(BundleCache.key("other", HASHES, null));
+    }
+}
@@ -0,0 +1,137 @@
+package com.github.crmepham;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests which shared files are moved into the common bundle when <em>commonChunk</em> is true.
+ *
+ * @author Christopher Mepham
+ */
+public class CommonChunkTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File resources;
+
+    private File target;
+
+    @Before
+    public void setUp() throws IOException {
+        resources = folder.newFolder("project", "src", "main", "resources");
+        target = folder.newFolder("project", "target");
+    }
+
+    @Test
+    public void movesSharedFilesThatLeadEveryBundle() throws Exception {
+        write("app/1-reset.css", ".reset{margin:0}");
+        write("app/2-app.css", ".app{color:red}");
+        write("admin/1-reset.css", ".reset{margin:0}");
+        write("admin/2-admin.css", ".admin{color:blue}");
+        write("app/lib.js", "var lib=1;");
+        write("admin/lib.js", "var lib=1;");
+
+        execute();
+
+        assertThat(bundle("common-bundle.css")).isEqualTo(".reset{margin:0}");
+        assertThat(bundle("app-bundle.css")).isEqualTo(".app{color:red}");
+        assertThat(bundle("admin-bundle.css")).isEqualTo(".admin{color:blue}");
+        assertThat(bundle("common-bundle.js")).contains("var lib=1");
+        assertThat(new File(target, "classes/static/app-bundle.js")).doesNotExist();
+        assertThat(bundle("asset-manifest.json")).contains("common-bundle.css", "common-bundle.js");
+    }
+
+    @Test
+    public void keepsSharedFilesThatFollowTheFilesOfABundle() throws Exception {
+        write("app/1-reset.css", ".reset{margin:0}");
+        write("app/2-app.css", ".app{color:red}");
+        write("app/3-widgets.css", ".widget{color:green}");
+        write("admin/1-reset.css", ".reset{margin:0}");
+        write("admin/2-widgets.css", ".widget{color:green}");
+        write("admin/3-admin.css", ".admin{color:blue}");
+
+        execute();
+
+        // Loading the widgets first would let the rules of the app override them.
+        assertThat(bundle("common-bundle.css")).isEqualTo(".reset{margin:0}");
+        assertThat(bundle("app-bundle.css")).isEqualTo(".app{color:red}.widget{color:green}");
+        assertThat(bundle("admin-bundle.css")).isEqualTo(".widget{color:green}.admin{color:blue}");
+    }
+
+    @Test
+    public void keepsSharedFilesThatLeadBundlesInDifferentOrders() throws Exception {
+        write("app/1-grid.css", ".grid{display:grid}");
+        write("app/2-type.css", ".type{font-size:1em}");
+        write("admin/1-type.css", ".type{font-size:1em}");
+        write("admin/2-grid.css", ".grid{display:grid}");
+
+        execute();
+
+        assertThat(new File(target, "classes/static/common-bundle.css")).doesNotExist();
+        assertThat(bundle("app-bundle.css")).isEqualTo(".grid{display:grid}.type{font-size:1em}");
+        assertThat(bundle("admin-bundle.css")).isEqualTo(".type{font-size:1em}.grid{display:grid}");
+    }
+
+    private void execute() throws Exception {
+        // The resources are copied to the target directory before the plugin runs, as in the package phase.
+        FileUtils.copyDirectory(new File(resources, "static"), new File(target, "classes/static"));
+
+        final Main main = new Main();
+        main.setLog(new SystemStreamLog() {
+            @Override
+            public boolean isInfoEnabled() {
+                return false;
+            }
+
+            @Override
+            public void info(final CharSequence content) {
+            }
+        });
+        set(main, "projectBuildDirectory", target.getAbsolutePath());
+        set(main, "projectResourcesDirectory", resources.getAbsolutePath());
+        set(main, "externalDependenciesFilePath", new File(resources, "bundler/dependencies.json").getAbsolutePath());
+        set(main, "fromPath", "static");
+        set(main, "toPath", "classes/static");
+        set(main, "copyBundleFilesOnly", true);
+        set(main, "commonChunk", true);
+        set(main, "commonChunkName", "common");
+        set(main, "assetManifestFileName", "asset-manifest.json");
+        set(main, "jsLineBreak", 1);
+        set(main, "pluginVersion", "test");
+        main.execute();
+    }
+
+    private void write(final String path, final String contents) throws IOException {
+        FileUtils.writeStringToFile(new File(resources, "static/" + path), contents, UTF_8);
+    }
+
+    private String bundle(final String name) throws IOException {
+        return FileUtils.readFileToString(new File(target, "classes/static/" + name), UTF_8).trim();
+    }
+
+    private static void set(final Object mojo, final String name, final Object value) throws ReflectiveOperationException {
+        for (Class<?> type = mojo.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                final Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(mojo, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                // Try the superclass.
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+}
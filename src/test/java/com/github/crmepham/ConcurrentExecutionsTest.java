@@ -0,0 +1,223 @@
+package com.github.crmepham;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests concurrent executions of the mojo, as in a parallel multi-module build, against a shared minification
+ * cache and bundle cache that are small enough for entries to be evicted while other executions read them.
+ *
+ * @author Christopher Mepham
+ */
+public class ConcurrentExecutionsTest {
+
+    private static final int MODULES = 4;
+
+    private static final int ROUNDS = 2;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void everyExecutionCreatesTheSameBundlesAsOneWithoutCaches() throws Exception {
+        final File tree = folder.newFolder("tree");
+        for (int i = 0; i < 40; i++) {
+            final File directory = new File(tree, "bundle" + (i % 5) + File.separator + "part" + (i % 3));
+            if (i % 2 == 0) {
+                FileUtils.writeStringToFile(new File(directory, "file" + i + ".js"), js(i), UTF_8);
+            } else {
+                FileUtils.writeStringToFile(new File(directory, "file" + i + ".css"), css(i), UTF_8);
+            }
+        }
+        final File caches = folder.newFolder("caches");
+
+        final RecordingLog referenceLog = new RecordingLog();
+        final File reference = folder.newFolder("reference");
+        execute(reference, tree, null, referenceLog);
+        assertThat(referenceLog.messages).isEmpty();
+        final Map<String, String> expected = bundles(reference);
+        assertThat(expected).hasSize(10);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(MODULES);
+        final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        try {
+            for (int round = 1; round <= ROUNDS; round++) {
+                final CountDownLatch ready = new CountDownLatch(1);
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int module = 1; module <= MODULES; module++) {
+                    final File project = folder.newFolder("round" + round, "module" + module);
+                    final String name = "round " + round + ", module " + module;
+                    futures.add(executor.submit(() -> {
+                        ready.await();
+                        final RecordingLog log = new RecordingLog();
+                        try {
+                            execute(project, tree, caches, log);
+                            if (!bundles(project).equals(expected)) {
+                                failures.add(name + ": bundles differ from the reference bundles");
+                            }
+                        } catch (Exception e) {
+                            failures.add(name + ": " + e);
+                        } finally {
+                            for (String message : log.messages) {
+                                failures.add(name + ": " + message);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                ready.countDown();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(failures).isEmpty();
+        assertThat(new File(caches, "minified").list()).isNotEmpty();
+        assertThat(new File(caches, "bundles").list()).isNotEmpty();
+    }
+
+    @Test
+    public void sharesOneMinificationCacheForEachDirectoryAndSize() throws IOException {
+        final File directory = folder.newFolder("minified");
+
+        assertThat(MinificationCache.open(new File(directory, "../minified"), 1024)).isSameAs(MinificationCache.open(directory, 1024));
+        assertThat(MinificationCache.open(directory, 2048)).isNotSameAs(MinificationCache.open(directory, 1024));
+    }
+
+    /**
+     * Execute a new mojo over a copy of the given tree.
+     * @param project The project directory to create.
+     * @param tree The tree of sources to bundle.
+     * @param caches The directory to keep the shared caches in, or null to disable every cache.
+     * @param log The log to record warnings and errors in.
+     */
+    private static void execute(final File project, final File tree, final File caches, final RecordingLog log) throws Exception {
+        final File resources = new File(project, "src/main/resources");
+        FileUtils.copyDirectory(tree, new File(resources, "static"));
+        final File target = new File(project, "target");
+
+        // The resources are copied to the target directory before the plugin runs, as in the package phase.
+        FileUtils.copyDirectory(tree, new File(target, "classes/static"));
+
+        final Main main = new Main();
+        main.setLog(log);
+        set(main, "projectBuildDirectory", target.getAbsolutePath());
+        set(main, "projectResourcesDirectory", resources.getAbsolutePath());
+        set(main, "externalDependenciesFilePath", new File(resources, "bundler/dependencies.json").getAbsolutePath());
+        set(main, "fromPath", "static");
+        set(main, "toPath", "classes/static");
+        set(main, "copyBundleFilesOnly", true);
+        set(main, "parallel", true);
+        set(main, "threads", 2);
+        set(main, "jsLineBreak", 1);
+        set(main, "pluginVersion", "test");
+        if (caches != null) {
+            set(main, "cacheMinification", true);
+            set(main, "minificationCacheDirectory", new File(caches, "minified").getAbsolutePath());
+            set(main, "minificationCacheMaxSize", 16L * 1024);
+            set(main, "sharedCacheDirectory", new File(caches, "bundles").getAbsolutePath());
+        }
+        main.execute();
+    }
+
+    /**
+     * Read the bundles in the target directory of an execution.
+     * @return The content hash of every file, by name, along with any directory left behind.
+     */
+    private static Map<String, String> bundles(final File project) throws IOException {
+        final Map<String, String> bundles = new TreeMap<>();
+        final File[] files = new File(project, "target/classes/static").listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            bundles.put(file.getName(), file.isFile() ? ContentHash.of(file) : "directory");
+        }
+        return bundles;
+    }
+
+    private static String js(final int seed) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            builder.append("// Function ").append(i).append('\n')
+                    .append("function handler").append(seed).append('_').append(i).append("(element, options) {\n")
+                    .append("    var total = ").append(seed * i).append(";\n")
+                    .append("    element.setAttribute(\"data-total\", String(total + options.length));\n")
+                    .append("    return total;\n")
+                    .append("}\n\n");
+        }
+        return builder.toString();
+    }
+
+    private static String css(final int seed) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            builder.append("/* Block ").append(i).append(" */\n")
+                    .append(".block-").append(seed).append('-').append(i).append(" > a:hover {\n")
+                    .append("    margin : ").append(seed % 20).append("px ").append(i).append("px;\n")
+                    .append("    background : url( ../img/icon-").append(i).append(".png ) no-repeat;\n")
+                    .append("}\n\n");
+        }
+        return builder.toString();
+    }
+
+    private static void set(final Object mojo, final String name, final Object value) throws ReflectiveOperationException {
+        for (Class<?> type = mojo.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                final Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(mojo, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                // Try the superclass.
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+
+    /**
+     * The log of a single execution, which discards everything but warnings and errors.
+     */
+    private static final class RecordingLog extends SystemStreamLog {
+
+        private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public boolean isInfoEnabled() {
+            return false;
+        }
+
+        @Override
+        public void info(final CharSequence content) {
+        }
+
+        @Override
+        public void warn(final CharSequence content) {
+            messages.add("[warn] " + content);
+        }
+
+        @Override
+        public void error(final CharSequence content) {
+            messages.add("[error] " + content);
+        }
+    }
+}
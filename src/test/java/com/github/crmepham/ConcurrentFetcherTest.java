@@ -0,0 +1,186 @@
+package com.github.crmepham;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests {@link ConcurrentFetcher} against an embedded HTTP server that delays its responses.
+ *
+ * @author Christopher Mepham
+ */
+public class ConcurrentFetcherTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private StubServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = StubServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void returnsTheFilesInTheOrderTheUrisWereGiven() throws IOException {
+        final List<String> uris = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            server.respond("/" + i + ".js", "var v" + i + ";", null, null);
+            server.delay("/" + i + ".js", 50 * (6 - i));
+            uris.add(server.uri(i % 2 == 0 ? "127.0.0.1" : "localhost", "/" + i + ".js"));
+        }
+
+        final Map<String, File> files = fetcher(null, 4, 2, 10000).fetchAll(uris);
+
+        assertThat(files.keySet()).containsExactlyElementsOf(uris);
+        int i = 0;
+        for (File file : files.values()) {
+            assertThat(FileUtils.readFileToString(file, UTF_8)).isEqualTo("var v" + i++ + ";");
+        }
+    }
+
+    @Test
+    public void neverExceedsThePerHostOrGlobalLimit() throws IOException {
+        final List<String> uris = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            server.respond("/" + i + ".js", "var v" + i + ";", null, null);
+            server.delay("/" + i + ".js", 100);
+            uris.add(server.uri("127.0.0.1", "/" + i + ".js"));
+            uris.add(server.uri("localhost", "/" + i + ".js"));
+        }
+
+        fetcher(null, 3, 2, 10000).fetchAll(uris);
+
+        assertThat(server.peak("127.0.0.1")).isBetween(1, 2);
+        assertThat(server.peak("localhost")).isBetween(1, 2);
+        assertThat(server.peak(null)).isEqualTo(3);
+    }
+
+    @Test
+    public void aSlowHostDoesNotHoldUpTheOthers() throws IOException {
+        server.respond("/slow-1.js", "var a;", null, null);
+        server.respond("/slow-2.js", "var b;", null, null);
+        server.respond("/fast.js", "var c;", null, null);
+        server.delay("/slow-1.js", 1000);
+        server.delay("/slow-2.js", 1000);
+
+        fetcher(null, 2, 1, 10000).fetchAll(Arrays.asList(
+                server.uri("127.0.0.1", "/slow-1.js"), server.uri("127.0.0.1", "/slow-2.js"), server.uri("localhost", "/fast.js")));
+
+        assertThat(server.peak("127.0.0.1")).isEqualTo(1);
+        assertThat(server.requests("/fast.js").get(0).received - server.requests("/slow-1.js").get(0).received)
+                .isLessThan(500000000L);
+    }
+
+    @Test
+    public void abortsOnceTheTimeBudgetIsExceeded() {
+        server.respond("/slow.js", "var a;", null, null);
+        server.delay("/slow.js", 5000);
+
+        final long start = System.nanoTime();
+        assertThatThrownBy(() -> fetcher(null, 2, 2, 200).fetchAll(Arrays.asList(server.uri("/slow.js"))))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Fetching 1 external dependencies took longer than 200ms. Still waiting for: " + server.uri("/slow.js"));
+        assertThat(System.nanoTime() - start).isLessThan(4000000000L);
+    }
+
+    @Test
+    public void reportsEveryDependencyThatCouldNotBeFetched() {
+        server.respond("/a.js", "var a;", null, null);
+
+        assertThatThrownBy(() -> fetcher(null, 2, 1, 10000).fetchAll(Arrays.asList(
+                server.uri("/a.js"), server.uri("/missing-1.js"), server.uri("/missing-2.js"))))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Failed to fetch 2 of 3 external dependencies.");
+    }
+
+    @Test
+    public void stagesDependenciesFromTheCache() throws IOException {
+        server.respond("/a.js", "var a;", "\"a\"", null);
+        final HttpCache cache = new HttpCache(folder.newFolder("cache"), 1024 * 1024);
+
+        final File online = fetcher(cache, 2, 1, 10000).fetchAll(Arrays.asList(server.uri("/a.js"))).get(server.uri("/a.js"));
+        final File offline = new ConcurrentFetcher(new SystemStreamLog(), new BuildReport(), cache, folder.newFolder("offline"), true, 2, 1, 10000)
+                .fetchAll(Arrays.asList(server.uri("/a.js"))).get(server.uri("/a.js"));
+
+        assertThat(FileUtils.readFileToString(online, UTF_8)).isEqualTo("var a;");
+        assertThat(FileUtils.readFileToString(offline, UTF_8)).isEqualTo("var a;");
+        assertThat(server.requests("/a.js")).hasSize(1);
+    }
+
+    @Test
+    public void keepsTheDeclaredOrderInEveryBundle() throws Exception {
+        server.respond("/first.min.js", "var first;", null, null);
+        server.respond("/second.min.js", "var second;", null, null);
+        server.respond("/third.min.js", "var third;", null, null);
+        server.delay("/first.min.js", 300);
+        server.delay("/second.min.js", 150);
+
+        final File project = folder.newFolder("project");
+        final File resources = new File(project, "src/main/resources");
+        FileUtils.forceMkdir(new File(resources, "static"));
+        final File dependencies = new File(resources, "bundler/dependencies.json");
+        FileUtils.writeStringToFile(dependencies, String.format(
+                "[ { \"name\": \"app\", \"js\": [\"%s\", \"%s\", \"%s\"] }, { \"name\": \"vendor\", \"js\": [\"%s\", \"%s\"] } ]",
+                server.uri("/first.min.js"), server.uri("localhost", "/second.min.js"), server.uri("/third.min.js"),
+                server.uri("/third.min.js"), server.uri("/first.min.js")), UTF_8);
+
+        final Main main = new Main();
+        set(main, "projectBuildDirectory", new File(project, "target").getPath());
+        set(main, "projectResourcesDirectory", resources.getPath());
+        set(main, "externalDependenciesFilePath", dependencies.getPath());
+        set(main, "fromPath", "static");
+        set(main, "toPath", "classes/static");
+        set(main, "writeToBuildDirectory", true);
+        set(main, "fetchThreads", 4);
+        set(main, "fetchThreadsPerHost", 4);
+        set(main, "fetchTimeout", 30);
+        main.setLog(new SystemStreamLog());
+        main.execute();
+
+        final File bundles = new File(project, "target/classes/static");
+        assertThat(FileUtils.readFileToString(new File(bundles, "app-bundle.js"), UTF_8))
+                .containsSubsequence("var first;", "var second;", "var third;");
+        assertThat(FileUtils.readFileToString(new File(bundles, "vendor-bundle.js"), UTF_8))
+                .containsSubsequence("var third;", "var first;");
+    }
+
+    private ConcurrentFetcher fetcher(final HttpCache cache, final int threads, final int threadsPerHost, final long timeout) throws IOException {
+        return new ConcurrentFetcher(new SystemStreamLog(), new BuildReport(), cache, folder.newFolder(), false, threads, threadsPerHost, timeout);
+    }
+
+    private static void set(final Object mojo, final String name, final Object value) throws ReflectiveOperationException {
+        for (Class<?> type = mojo.getClass(); type != null; type = type.getSuperclass()) {
+            try {
+                final Field field = type.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(mojo, value);
+                return;
+            } catch (NoSuchFieldException e) {
+                // Try the superclass.
+            }
+        }
+        throw new NoSuchFieldException(name);
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.crmepham;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Base64;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the data URIs and rebased URLs written by {@link CssAssetInliner}.
+ *
+ * @author Christopher Mepham
+ */
+public class CssAssetInlinerTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+    private File css;
+    private CssAssetInliner inliner;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("static");
+        css = new File(root, "app/css/nested/site.css");
+        FileUtils.touch(css);
+        FileUtils.writeByteArrayToFile(new File(root, "app/img/small.png"), new byte[16]);
+        FileUtils.writeByteArrayToFile(new File(root, "app/img/large.png"), new byte[17]);
+        FileUtils.writeByteArrayToFile(new File(root, "app/fonts/icons.woff"), new byte[8]);
+        inliner = new CssAssetInliner(root, 16, new SystemStreamLog());
+    }
+
+    @Test
+    public void inlinesAssetsUpToTheMaximumSize() throws IOException {
+        assertThat(inliner.rewrite("a{background:url(../../img/small.png)}", css))
+                .isEqualTo("a{background:url(data:image/png;base64," + Base64.getEncoder().encodeToString(new byte[16]) + ")}");
+        assertThat(inliner.rewrite("a{background:url('../../img/large.png')}", css))
+                .isEqualTo("a{background:url('app/img/large.png')}");
+    }
+
+    @Test
+    public void inlinesFontsWithTheirType() throws IOException {
+        assertThat(inliner.rewrite("@font-face{src:url(\"../../fonts/icons.woff\")}", css))
+                .startsWith("@font-face{src:url(data:font/woff;base64,");
+    }
+
+    @Test
+    public void rebasesUrlsFromNestedDirectories() throws IOException {
+        assertThat(inliner.rewrite("a{background:url(\"../../img/missing.png\")}", css))
+                .isEqualTo("a{background:url(\"app/img/missing.png\")}");
+        assertThat(inliner.rewrite("a{background:url(sprites/b.gif)}", css))
+                .isEqualTo("a{background:url(app/css/nested/sprites/b.gif)}");
+        assertThat(inliner.rewrite("@font-face{src:url(../../fonts/icons.woff?#iefix)}", css))
+                .isEqualTo("@font-face{src:url(app/fonts/icons.woff?#iefix)}");
+    }
+
+    @Test
+    public void rebasesUrlsOutsideOfTheSourceDirectory() throws IOException {
+        assertThat(inliner.rewrite("a{background:url(../../../../images/x.png)}", css))
+                .isEqualTo("a{background:url(../images/x.png)}");
+    }
+
+    @Test
+    public void leavesAbsoluteUrlsDataUrisAndFragmentsAlone() throws IOException {
+        final String rules = "a{background:url(/img/x.png)}b{background:url(https://cdn.example.com/x.png)}"
+                + "i{background:url(data:image/gif;base64,R0lGOD==)}svg{filter:url(#blur)}p{background:url()}";
+
+        assertThat(inliner.rewrite(rules, css)).isEqualTo(rules);
+    }
+
+    @Test
+    public void findsTheAssetsThatMayBeInlined() throws IOException {
+        FileUtils.writeStringToFile(css, "a{background:url(../../img/small.png)}b{background:url(../../img/large.png)}"
+                + "i{background:url(../../img/missing.png)}@font-face{src:url(../../fonts/icons.woff?#iefix)}", "UTF-8");
+
+        assertThat(inliner.assets(Arrays.asList(css)))
+                .containsExactly(new File(root, "app/img/small.png").getAbsoluteFile(), new File(root, "app/img/large.png").getAbsoluteFile());
+    }
+}
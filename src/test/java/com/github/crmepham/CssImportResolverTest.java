@@ -0,0 +1,124 @@
+package com.github.crmepham;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the import order and the statements removed by {@link CssImportResolver}.
+ *
+ * @author Christopher Mepham
+ */
+public class CssImportResolverTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> warnings = new ArrayList<>();
+
+    private final SystemStreamLog log = new SystemStreamLog() {
+        @Override
+        public void warn(final CharSequence content) {
+            warnings.add(content.toString());
+        }
+    };
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("static");
+    }
+
+    @Test
+    public void addsImportedFilesDepthFirstBeforeTheFileThatImportsThem() throws IOException {
+        final File main = write("app/main.css", "@import \"base.css\";@import url('theme/theme.css');.main{color:red}");
+        final File base = write("app/base.css", "@import url(reset.css);.base{color:red}");
+        final File reset = write("app/reset.css", ".reset{margin:0}");
+        final File theme = write("app/theme/theme.css", "@charset \"utf-8\";/* colours */@import \"../colours.css\";.theme{color:red}");
+        final File colours = write("app/colours.css", ".colours{color:red}");
+
+        assertThat(resolve(main)).containsExactly(reset, base, colours, theme, main);
+        assertThat(warnings).isEmpty();
+    }
+
+    @Test
+    public void addsEveryFileOnlyOnceWhereItIsFirstNeeded() throws IOException {
+        final File first = write("app/first.css", "@import \"shared.css\";.first{color:red}");
+        final File second = write("app/second.css", "@import \"./shared.css\";@import \"shared.css\";.second{color:red}");
+        final File shared = write("app/shared.css", ".shared{color:red}");
+
+        assertThat(resolve(first, second, shared)).containsExactly(shared, first, second);
+    }
+
+    @Test
+    public void breaksACycleWhereItWouldClose() throws IOException {
+        final File a = write("app/a.css", "@import \"b.css\";.a{color:red}");
+        final File b = write("app/b.css", "@import \"c.css\";.b{color:red}");
+        final File c = write("app/c.css", "@import \"a.css\";.c{color:red}");
+
+        assertThat(resolve(a)).containsExactly(c, b, a);
+        assertThat(warnings).containsExactly("Ignoring @import cycle: app/a.css -> app/b.css -> app/c.css -> app/a.css"
+                .replace('/', File.separatorChar));
+    }
+
+    @Test
+    public void skipsConditionedAndRemoteImports() throws IOException {
+        final File main = write("app/main.css", "@import \"print.css\" print;@import url(wide.css) screen and (min-width:900px);"
+                + "@import \"layered.css\" layer(base);@import \"http://cdn.example.com/x.css\";@import \"/abs.css\";.main{color:red}");
+        write("app/print.css", ".print{color:red}");
+        write("app/wide.css", ".wide{color:red}");
+        write("app/layered.css", ".layered{color:red}");
+
+        assertThat(resolve(main)).containsExactly(main);
+        assertThat(CssImportResolver.strip(read(main), main, root)).isEqualTo("@import \"app/print.css\" print;"
+                + "@import \"app/wide.css\" screen and (min-width:900px);@import \"app/layered.css\" layer(base);"
+                + "@import \"http://cdn.example.com/x.css\";@import \"/abs.css\";.main{color:red}");
+    }
+
+    @Test
+    public void removesOnlyTheImportsThatAreInlined() throws IOException {
+        final File main = write("app/css/main.css", "@import \"base.css\";.main{color:red}@import \"late.css\";");
+        write("app/css/base.css", ".base{color:red}");
+        write("app/css/late.css", ".late{color:red}");
+
+        assertThat(CssImportResolver.strip(read(main), main, root)).isEqualTo(".main{color:red}@import \"late.css\";");
+    }
+
+    @Test
+    public void keepsImportsOfMissingFilesOrFilesOutsideOfTheSourceDirectory() throws IOException {
+        final File main = write("app/css/main.css", "@import \"missing.css\";@import url(../../../shared/outside.css);.main{color:red}");
+        write("../shared/outside.css", ".outside{color:red}");
+
+        assertThat(resolve(main)).containsExactly(main);
+        assertThat(warnings).hasSize(2);
+        assertThat(CssImportResolver.strip(read(main), main, root))
+                .isEqualTo("@import \"app/css/missing.css\";@import \"../shared/outside.css\";.main{color:red}");
+    }
+
+    private List<File> resolve(final File... files) throws IOException {
+        return CssImportResolver.resolve(Arrays.asList(files), root, log);
+    }
+
+    private File write(final String path, final String contents) throws IOException {
+        final File file = new File(root, path).getAbsoluteFile().toPath().normalize().toFile();
+        FileUtils.writeStringToFile(file, contents, UTF_8);
+        return file;
+    }
+
+    private static String read(final File file) throws IOException {
+        return FileUtils.readFileToString(file, UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.crmepham;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Tests the output of {@link CssMinifier}.
+ *
+ * @author Christopher Mepham
+ */
+public class CssMinifierTest {
+
+    private final CssMinifier minifier = new CssMinifier();
+
+    @Test
+    public void keepsTheSpaceInDescendantSelectors() throws IOException {
+        assertThat(minifier.minify("a b {\n  color : red ;\n}\n")).isEqualTo("a b{color:red}");
+        assertThat(minifier.minify("div  >  p ,  ul   li { margin : 0 }")).isEqualTo("div>p,ul li{margin:0}");
+        assertThat(minifier.minify("a :hover { color : red }")).isEqualTo("a :hover{color:red}");
+    }
+
+    @Test
+    public void copiesQuotedStringsVerbatim() throws IOException {
+        assertThat(minifier.minify("a::before { content : \"a  /* b */  ; c\" ; font-family : 'Open  Sans' }"))
+                .isEqualTo("a::before{content:\"a  /* b */  ; c\";font-family:'Open  Sans'}");
+        assertThat(minifier.minify("a { content : \"say \\\"hi  there\\\"\" }")).isEqualTo("a{content:\"say \\\"hi  there\\\"\"}");
+    }
+
+    @Test
+    public void copiesUrlsVerbatim() throws IOException {
+        assertThat(minifier.minify("a { background : url( ../img/x.png ) }")).isEqualTo("a{background:url(../img/x.png)}");
+        assertThat(minifier.minify("a { background : url( \"a  b.png\" ) }")).isEqualTo("a{background:url(\"a  b.png\")}");
+        assertThat(minifier.minify("a { background : url(http://example.com/x.png) }")).isEqualTo("a{background:url(http://example.com/x.png)}");
+        assertThat(minifier.minify("a { background : url(data:image/png;base64,AB==) }")).isEqualTo("a{background:url(data:image/png;base64,AB==)}");
+    }
+
+    @Test
+    public void keepsTheWhitespaceInsideCalc() throws IOException {
+        assertThat(minifier.minify(".x { width : calc( 100% - 2px ) ; height : calc(1px + 2px * 3) }"))
+                .isEqualTo(".x{width:calc(100% - 2px);height:calc(1px + 2px * 3)}");
+    }
+
+    @Test
+    public void keepsTheSpaceBeforeParenthesesInMediaQueries() throws IOException {
+        assertThat(minifier.minify("@media screen and (max-width: 100px) and (orientation: landscape) {\n  a { color : blue !important ; }\n}"))
+                .isEqualTo("@media screen and (max-width:100px) and (orientation:landscape){a{color:blue!important}}");
+    }
+
+    @Test
+    public void removesComments() throws IOException {
+        assertThat(minifier.minify("/* header */\na { /* inner */ color : red }\n/* trailer */")).isEqualTo("a{color:red}");
+        assertThat(minifier.minify("a { color : red } /* unterminated")).isEqualTo("a{color:red}");
+    }
+
+    @Test
+    public void removesTheLastSemicolonInABlockOnly() throws IOException {
+        assertThat(minifier.minify("a { color : red ;; }")).isEqualTo("a{color:red}");
+        assertThat(minifier.minify("@font-face { font-family : x ; src : url(x.woff) ; }")).isEqualTo("@font-face{font-family:x;src:url(x.woff)}");
+        assertThat(minifier.minify("@import url(a.css) ;\n")).isEqualTo("@import url(a.css);");
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.crmepham;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests the rewriting of minified <em>CSS</em> bundles by {@link CssOptimizer}.
+ *
+ * @author Christopher Mepham
+ */
+public class CssOptimizerTest {
+
+    @Test
+    public void removesExactDuplicatesKeepingTheLastCopy() {
+        assertThat(optimize("a{color:red}b{color:blue}a{color:red}")).isEqualTo("b{color:blue}a{color:red}");
+        assertThat(optimize("a{color:red;margin:0;color:red}")).isEqualTo("a{margin:0;color:red}");
+        assertThat(optimize("@media print{a{color:red}}b{color:blue}@media print{a{color:red}}"))
+                .isEqualTo("b{color:blue}@media print{a{color:red}}");
+    }
+
+    @Test
+    public void removesDuplicatesAcrossTheFilesOfABundle() {
+        assertThat(CssOptimizer.optimize(Arrays.asList(".b{color:green}", ".b{color:green}.c{margin:0}")))
+                .containsExactly("", ".b{color:green}.c{margin:0}");
+    }
+
+    @Test
+    public void mergesAdjacentRulesWithTheSameSelector() {
+        assertThat(optimize("a{color:red}a{margin:0}")).isEqualTo("a{color:red;margin:0}");
+        assertThat(optimize("a{color:red}b{margin:0}a{color:red}a{padding:0}")).isEqualTo("b{margin:0}a{color:red;padding:0}");
+    }
+
+    @Test
+    public void keepsDeclarationsThatMustNotMove() {
+        // Fallbacks stay before the value they fall back from.
+        assertThat(optimize("a{display:-webkit-box;display:flex}")).isEqualTo("a{display:-webkit-box;display:flex}");
+        assertThat(optimize("a{color:red}a{color:blue}")).isEqualTo("a{color:red;color:blue}");
+        // Rules with the same selector are only merged when nothing lies between them.
+        assertThat(optimize("a{color:red}b{color:blue}a{background:none}")).isEqualTo("a{color:red}b{color:blue}a{background:none}");
+        assertThat(optimize("a{color:red}@media print{a{color:blue}}a{margin:0}"))
+                .isEqualTo("a{color:red}@media print{a{color:blue}}a{margin:0}");
+        assertThat(optimize("@charset \"utf-8\";@import url(a.css);/*!keep*/a{color:red}"))
+                .isEqualTo("@charset \"utf-8\";@import url(a.css);/*!keep*/a{color:red}");
+    }
+
+    @Test
+    public void neverRemovesAtRulesWhosePositionMatters() {
+        final String layers = "@layer base{a{color:red}}@layer theme{a{color:blue}}@layer base{a{color:red}}";
+        assertThat(optimize(layers)).isEqualTo(layers);
+        assertThat(optimize("@layer base{}@layer theme{a{color:blue}}")).isEqualTo("@layer base{}@layer theme{a{color:blue}}");
+
+        final String fonts = "@font-face{font-family:x;src:url(a.woff)}@font-face{font-family:x;src:url(b.woff)}"
+                + "@font-face{font-family:x;src:url(a.woff)}";
+        assertThat(optimize(fonts)).isEqualTo(fonts);
+
+        final String keyframes = "@keyframes spin{to{transform:rotate(1turn)}}@keyframes spin{to{transform:rotate(1turn)}}";
+        assertThat(optimize(keyframes)).isEqualTo(keyframes);
+    }
+
+    @Test
+    public void optimizesTheRulesInsideALayer() {
+        assertThat(optimize("@layer base{a{color:red}a{color:red}b{margin:0}}")).isEqualTo("@layer base{a{color:red}b{margin:0}}");
+    }
+
+    @Test
+    public void leavesInputThatCannotBeParsed() {
+        assertThat(CssOptimizer.optimize(Collections.singletonList("a{color:red"))).isNull();
+        assertThat(CssOptimizer.optimize(Collections.singletonList("a{color:red}}"))).isNull();
+        assertThat(CssOptimizer.optimize(Arrays.asList("a{color:red}", "a{content:\"unclosed}"))).isNull();
+        assertThat(CssOptimizer.optimize(Collections.singletonList("a{color:red}/* unclosed"))).isNull();
+    }
+
+    private static String optimize(final String css) {
+        final List<String> optimized = CssOptimizer.optimize(Collections.singletonList(css));
+        assertThat(optimized).hasSize(1);
+        return optimized.get(0);
+    }
+}
@@ -0,0 +1,153 @@
+package com.github.crmepham;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.Gson;
+
+/**
+ * Tests {@link HttpCache} against an embedded HTTP server.
+ *
+ * @author Christopher Mepham
+ */
+public class HttpCacheTest {
+
+    private static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private StubServer server;
+    private File directory;
+    private HttpCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        server = StubServer.start();
+        directory = folder.newFolder("cache");
+        cache = new HttpCache(directory, 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void storesTheBodyAndValidatorsOfTheFirstResponse() throws IOException {
+        server.respond("/app.js", "var a = 1;", "\"v1\"", LAST_MODIFIED);
+
+        final File body = cache.fetch(server.uri("/app.js"), false);
+
+        assertThat(FileUtils.readFileToString(body, UTF_8)).isEqualTo("var a = 1;");
+        final File[] metadata = directory.listFiles((dir, name) -> name.endsWith(".json"));
+        assertThat(metadata).hasSize(1);
+        final HttpCache.Metadata stored = new Gson().fromJson(FileUtils.readFileToString(metadata[0], UTF_8), HttpCache.Metadata.class);
+        assertThat(stored.uri).isEqualTo(server.uri("/app.js"));
+        assertThat(stored.etag).isEqualTo("\"v1\"");
+        assertThat(stored.lastModified).isEqualTo(LAST_MODIFIED);
+        assertThat(new File(directory, stored.body + ".body")).isEqualTo(body);
+    }
+
+    @Test
+    public void reusesTheCachedBodyWhenTheServerRespondsNotModified() throws IOException {
+        server.respond("/app.js", "var a = 1;", "\"v1\"", LAST_MODIFIED);
+        final File first = cache.fetch(server.uri("/app.js"), false);
+
+        final File second = cache.fetch(server.uri("/app.js"), false);
+
+        final List<StubServer.Request> requests = server.requests("/app.js");
+        assertThat(requests).hasSize(2);
+        assertThat(requests.get(0).ifNoneMatch).isNull();
+        assertThat(requests.get(1).ifNoneMatch).isEqualTo("\"v1\"");
+        assertThat(requests.get(1).ifModifiedSince).isEqualTo(LAST_MODIFIED);
+        assertThat(second).isEqualTo(first);
+        assertThat(FileUtils.readFileToString(second, UTF_8)).isEqualTo("var a = 1;");
+    }
+
+    @Test
+    public void replacesTheBodyWhenTheETagChanges() throws IOException {
+        server.respond("/app.js", "var a = 1;", "\"v1\"", LAST_MODIFIED);
+        final File first = cache.fetch(server.uri("/app.js"), false);
+        server.respond("/app.js", "var a = 2;", "\"v2\"", LAST_MODIFIED);
+
+        final File second = cache.fetch(server.uri("/app.js"), false);
+
+        assertThat(FileUtils.readFileToString(second, UTF_8)).isEqualTo("var a = 2;");
+        assertThat(second).isNotEqualTo(first);
+        assertThat(cache.fetch(server.uri("/app.js"), false)).isEqualTo(second);
+        assertThat(server.requests("/app.js").get(2).ifNoneMatch).isEqualTo("\"v2\"");
+    }
+
+    @Test
+    public void keepsABodyThatAnotherUriStillRefersTo() throws IOException {
+        server.respond("/app.js", "var a = 1;", "\"v1\"", null);
+        server.respond("/copy.js", "var a = 1;", "\"v1\"", null);
+        final File shared = cache.fetch(server.uri("/app.js"), false);
+        assertThat(cache.fetch(server.uri("/copy.js"), false)).isEqualTo(shared);
+        server.respond("/app.js", "var a = 2;", "\"v2\"", null);
+
+        cache.fetch(server.uri("/app.js"), false);
+
+        assertThat(shared).exists();
+        assertThat(FileUtils.readFileToString(cache.fetch(server.uri("/copy.js"), true), UTF_8)).isEqualTo("var a = 1;");
+    }
+
+    @Test
+    public void servesFromTheCacheWithoutRequestsWhenOffline() throws IOException {
+        server.respond("/app.js", "var a = 1;", "\"v1\"", null);
+        final File online = cache.fetch(server.uri("/app.js"), false);
+
+        final File offline = cache.fetch(server.uri("/app.js"), true);
+
+        assertThat(offline).isEqualTo(online);
+        assertThat(FileUtils.readFileToString(offline, UTF_8)).isEqualTo("var a = 1;");
+        assertThat(server.requests("/app.js")).hasSize(1);
+    }
+
+    @Test
+    public void failsOfflineWhenTheDependencyHasNotBeenCached() {
+        server.respond("/app.js", "var a = 1;", "\"v1\"", null);
+
+        assertThatThrownBy(() -> cache.fetch(server.uri("/app.js"), true))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("has not been cached")
+                .hasMessageContaining(server.uri("/app.js"));
+        assertThat(server.requests("/app.js")).isEmpty();
+    }
+
+    @Test
+    public void failsOnAnUnexpectedStatus() {
+        assertThatThrownBy(() -> cache.fetch(server.uri("/missing.js"), false))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("404");
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedBodiesOnceOverTheMaximumSize() throws IOException {
+        final HttpCache bounded = new HttpCache(directory, 25);
+        server.respond("/a.js", "var aaaaaaaaa;", null, null);
+        server.respond("/b.js", "var bbbbbbbbb;", null, null);
+        final File a = bounded.fetch(server.uri("/a.js"), false);
+        a.setLastModified(System.currentTimeMillis() - 60000);
+
+        final File b = bounded.fetch(server.uri("/b.js"), false);
+
+        assertThat(a).doesNotExist();
+        assertThat(b).exists();
+        assertThat(directory.listFiles((dir, name) -> name.endsWith(".json"))).hasSize(1);
+        assertThatThrownBy(() -> bounded.fetch(server.uri("/a.js"), true)).isInstanceOf(IOException.class);
+    }
+}
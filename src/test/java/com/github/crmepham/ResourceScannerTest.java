@@ -0,0 +1,70 @@
+package com.github.crmepham;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the include and exclude patterns of {@link ResourceScanner}.
+ *
+ * @author Christopher Mepham
+ */
+public class ResourceScannerTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.newFolder("static");
+        for (String path : new String[] {"app/a.js", "app/lib/b.js", "app/vendor/c.js", "vendor/d.js", "vendor/lib/e.js", "admin/f.js"}) {
+            FileUtils.touch(new File(root, path));
+        }
+    }
+
+    @Test
+    public void anyDirectoryPrefixAlsoMatchesATopLevelDirectory() throws IOException {
+        assertThat(scan(Collections.emptyList(), Collections.singletonList("**/vendor")))
+                .containsExactly("admin/f.js", "app/a.js", "app/lib/b.js");
+    }
+
+    @Test
+    public void anyDirectoryInTheMiddleAlsoMatchesNoDirectory() throws IOException {
+        assertThat(scan(Collections.singletonList("app/**/*.js"), Collections.emptyList()))
+                .containsExactly("app/a.js", "app/lib/b.js", "app/vendor/c.js");
+    }
+
+    @Test
+    public void everyAnyDirectoryPartIsOptional() {
+        assertThat(ResourceScanner.variants("**/lib/**/*.js"))
+                .containsExactlyInAnyOrder("**/lib/**/*.js", "lib/**/*.js", "**/lib/*.js", "lib/*.js");
+        assertThat(ResourceScanner.variants("app/*.js")).containsExactly("app/*.js");
+        assertThat(ResourceScanner.variants("app**/*.js")).containsExactly("app**/*.js");
+    }
+
+    private List<String> scan(final List<String> includes, final List<String> excludes) throws IOException {
+        final Map<File, Map<FileExtension, List<File>>> found =
+                new ResourceScanner(Arrays.asList(FileExtension.js), includes, excludes).scan(root);
+        final List<String> paths = new ArrayList<>();
+        for (Map<FileExtension, List<File>> files : found.values()) {
+            for (File file : files.getOrDefault(FileExtension.js, Collections.emptyList())) {
+                paths.add(root.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/'));
+            }
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,202 @@
+package com.github.crmepham;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embedded HTTP server that serves fixed responses, honours conditional requests and records every
+ * request it receives, along with the peak number of requests it was serving at once.
+ *
+ * @author Christopher Mepham
+ */
+final class StubServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Response> responses = new ConcurrentHashMap<>();
+    private final Map<String, Long> delays = new ConcurrentHashMap<>();
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, Integer> inFlight = new HashMap<>();
+    private final Map<String, Integer> peaks = new HashMap<>();
+
+    private StubServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    static StubServer start() throws IOException {
+        return new StubServer();
+    }
+
+    /**
+     * @param path The path, such as <em>/app.js</em>.
+     * @return The URI of the path on this server.
+     */
+    String uri(final String path) {
+        return uri("127.0.0.1", path);
+    }
+
+    /**
+     * @param host The host name, such as <em>localhost</em>, which must resolve to the loopback address.
+     * @param path The path, such as <em>/app.js</em>.
+     * @return The URI of the path on this server, under the given host name.
+     */
+    String uri(final String host, final String path) {
+        return "http://" + host + ":" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * Serve the given body from a path, replacing any previous response.
+     * @param path The path.
+     * @param body The body.
+     * @param etag The <em>ETag</em> header, or null for none.
+     * @param lastModified The <em>Last-Modified</em> header, or null for none.
+     */
+    void respond(final String path, final String body, final String etag, final String lastModified) {
+        responses.put(path, new Response(body, etag, lastModified));
+    }
+
+    /**
+     * Wait before responding to every request for a path.
+     * @param path The path.
+     * @param millis The delay, in milliseconds.
+     */
+    void delay(final String path, final long millis) {
+        delays.put(path, millis);
+    }
+
+    /**
+     * @param host The host name the requests were made to, or null for every host.
+     * @return The largest number of requests that were being served at once.
+     */
+    synchronized int peak(final String host) {
+        return peaks.getOrDefault(host == null ? "" : host, 0);
+    }
+
+    /**
+     * @param path The path.
+     * @return The requests made for the path, in the order they were received.
+     */
+    List<Request> requests(final String path) {
+        final List<Request> result = new ArrayList<>();
+        synchronized (requests) {
+            for (Request request : requests) {
+                if (request.path.equals(path)) {
+                    result.add(request);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        final String path = exchange.getRequestURI().getPath();
+        final Request request = new Request(path, exchange.getRequestHeaders().getFirst("If-None-Match"),
+                exchange.getRequestHeaders().getFirst("If-Modified-Since"));
+        requests.add(request);
+
+        final String host = exchange.getRequestHeaders().getFirst("Host").replaceFirst(":\\d+$", "");
+        started(host);
+        final Response response = responses.get(path);
+        try {
+            try {
+                Thread.sleep(delays.getOrDefault(path, 0L));
+            } finally {
+                // The client may send its next request as soon as this response is written.
+                finished(host);
+            }
+            if (response == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if (response.etag != null && response.etag.equals(request.ifNoneMatch)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            if (response.etag != null) {
+                exchange.getResponseHeaders().set("ETag", response.etag);
+            }
+            if (response.lastModified != null) {
+                exchange.getResponseHeaders().set("Last-Modified", response.lastModified);
+            }
+            final byte[] body = response.body.getBytes(UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private synchronized void started(final String host) {
+        for (String key : new String[] {"", host}) {
+            final int count = inFlight.merge(key, 1, Integer::sum);
+            peaks.merge(key, count, Math::max);
+        }
+    }
+
+    private synchronized void finished(final String host) {
+        inFlight.merge("", -1, Integer::sum);
+        inFlight.merge(host, -1, Integer::sum);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A request received by the server.
+     */
+    static final class Request {
+        final String path;
+        final String ifNoneMatch;
+        final String ifModifiedSince;
+        final long received = System.nanoTime();
+
+        Request(final String path, final String ifNoneMatch, final String ifModifiedSince) {
+            this.path = path;
+            this.ifNoneMatch = ifNoneMatch;
+            this.ifModifiedSince = ifModifiedSince;
+        }
+    }
+
+    private static final class Response {
+        final String body;
+        final String etag;
+        final String lastModified;
+
+        Response(final String body, final String etag, final String lastModified) {
+            this.body = body;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+}